@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -28,6 +29,8 @@ public class CSVDataSourceBuilder extends DataSourceBuilder
 	    .asList(source.split("\\R+"));
 
     private Function<String, Boolean> rowFilter;
+    private Function<String, Boolean> header;
+    private boolean defaultRows = true;
     private BiConsumer<String, BiConsumer<LocalDate, Double>> dataExtractor;
 
     private CachedValue<String> source = new CachedValue<>();
@@ -46,10 +49,10 @@ public class CSVDataSourceBuilder extends DataSourceBuilder
 	    result.get(date).add(value);
 	};
 
-	for (String row : rows.get())
+	forEachDataRow((row) ->
 	{
 	    if (rowFilter == null || !rowFilter.apply(row)) dataExtractor.accept(row, adder);
-	}
+	});
 
 	return result;
     });
@@ -77,6 +80,9 @@ public class CSVDataSourceBuilder extends DataSourceBuilder
      * Optional:
      * <ul>
      * <li>
+     * {@link CSVDataSourceBuilder#setHeader(Function) Header}
+     * </li>
+     * <li>
      * {@link CSVDataSourceBuilder#setRowFilter(Function) RowFilter}
      * </li>
      * <li>
@@ -161,11 +167,32 @@ public class CSVDataSourceBuilder extends DataSourceBuilder
     {
 	if (rowExtractor == null) return setRowExtractor(DEFAULT_ROWEXTRACTOR);
 
+	defaultRows = rowExtractor == DEFAULT_ROWEXTRACTOR;
 	rows.updateSupplier(() -> rowExtractor.apply(source.get()));
 	data.clearCache();
 	return this;
     }
 
+    /**
+     * Sets the header, which ends the rows that are skipped before the
+     * data<br>
+     * <br>
+     * The rows up to and including the first row that the header accepts
+     * are skipped, so sources with a preamble can still be read with the
+     * {@link CSVDataSourceBuilder#DEFAULT_ROWEXTRACTOR default row extractor}
+     * 
+     * @param header
+     *            Accepts the header row, or null if the data starts at the
+     *            first row
+     * @return This builder
+     */
+    public CSVDataSourceBuilder setHeader(Function<String, Boolean> header)
+    {
+	this.header = header;
+	data.clearCache();
+	return this;
+    }
+
     /**
      * Sets the source supplier
      * 
@@ -246,4 +273,98 @@ public class CSVDataSourceBuilder extends DataSourceBuilder
     {
 	return data.get();
     }
+
+    /**
+     * Pushes each row through the row filter and the data extractor
+     * straight into the built source<br>
+     * <br>
+     * With the {@link CSVDataSourceBuilder#DEFAULT_ROWEXTRACTOR default row
+     * extractor}, the rows are read from the source one at a time instead of
+     * being split into a list. The rows of a date must follow each other
+     */
+    @Override
+    protected void generateData(BiConsumer<LocalDate, Double> consumer)
+    {
+	if (dataExtractor == null) throw new DataSourceBuilderException("Missing data extractor!");
+
+	forEachDataRow((row) ->
+	{
+	    if (rowFilter == null || !rowFilter.apply(row)) dataExtractor.accept(row, consumer);
+	});
+    }
+
+    /**
+     * Gives the rows after the header to a consumer
+     * 
+     * @throws DataSourceBuilderException
+     *             If there is a header and no row is accepted by it
+     */
+    private void forEachDataRow(Consumer<String> consumer)
+    {
+	boolean[] inData = { header == null };
+	Consumer<String> rowConsumer = (row) ->
+	{
+	    if (inData[0])
+		consumer.accept(row);
+	    else
+		inData[0] = header.apply(row);
+	};
+
+	if (defaultRows)
+	    forEachRow(source.get(), rowConsumer);
+	else
+	    rows.get().forEach(rowConsumer);
+
+	if (!inData[0]) throw new DataSourceBuilderException("Missing header!");
+    }
+
+    /**
+     * Gives the same rows as {@link CSVDataSourceBuilder#DEFAULT_ROWEXTRACTOR}
+     * to a consumer, without collecting them
+     */
+    static void forEachRow(String source, Consumer<String> consumer)
+    {
+	int length = source.length();
+	if (length == 0) consumer.accept("");
+
+	// Like String.split, a leading line break gives an empty first row,
+	// unless there are no other rows
+	boolean leadingRow = length > 0 && isLineBreak(source.charAt(0));
+	int start = 0;
+	while (start < length)
+	{
+	    while (start < length && isLineBreak(source.charAt(start)))
+		start++;
+	    if (start == length) break;
+
+	    if (leadingRow) consumer.accept("");
+	    leadingRow = false;
+
+	    int end = start + 1;
+	    while (end < length && !isLineBreak(source.charAt(end)))
+		end++;
+	    consumer.accept(source.substring(start, end));
+	    start = end;
+	}
+    }
+
+    /**
+     * The characters of the linebreak matcher '\R'
+     */
+    private static boolean isLineBreak(char character)
+    {
+	switch (character)
+	{
+	case '\n':
+	case '\u000B':
+	case '\u000C':
+	case '\r':
+	case '\u0085':
+	case '\u2028':
+	case '\u2029':
+	    return true;
+	default:
+	    return false;
+	}
+    }
 }
@@ -49,6 +49,8 @@ public class FootballAndWeatherCombiner
 	footballBuilder.setUnit("Goals");
 	footballBuilder.setDataExtractor(FootballSourceBuilder.TOTAL_GOALS_EXTRACTOR);
 
+	// The shared registry only holds the weather weakly, so it is also
+	// kept here until all arenas are matched
 	Map<SMHILocation, DataSource> weatherCache = new TreeMap<>();
 
 	for (Entry<String, SMHILocation> mapping : arenaToLocationMapper.entrySet())
@@ -59,8 +61,9 @@ public class FootballAndWeatherCombiner
 			SMHISourceBuilder.DataType.TEMPERATURE,
 			mapping.getValue());
 		weatherBuilder.setPeriod(Period.OLD);
-		weatherCache.put(mapping.getValue(), weatherBuilder.build());
+		weatherCache.put(mapping.getValue(), weatherBuilder.buildShared());
 	    }
+	    DataSource weather = weatherCache.get(mapping.getValue());
 
 	    footballBuilder.setEntryFilter((entry) ->
 	    {
@@ -72,7 +75,6 @@ public class FootballAndWeatherCombiner
 		return false;
 	    });
 
-	    DataSource weather = weatherCache.get(mapping.getValue());
 	    DataSource goals = footballBuilder.build();
 
 	    DataCollectionBuilder builder = new DataCollectionBuilder(goals, weather, Resolution.DAY);
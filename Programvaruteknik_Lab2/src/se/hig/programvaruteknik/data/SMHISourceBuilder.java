@@ -1,12 +1,12 @@
 package se.hig.programvaruteknik.data;
 
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.owlike.genson.Genson;
 
@@ -55,10 +55,20 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
 	}
     }
 
+    /**
+     * Fetches urls from SMHI
+     */
+    private static final Function<String, String> URL_FETCHER = (url) -> DataSupplierFactory.createURLFetcher(url).get();
+
     private Map<Period, String> periods = new TreeMap<>();
 
     private DataType dataType;
 
+    // Set once the constructor is done, so the setters it calls do not
+    // count as customizations
+    private boolean constructed;
+    private boolean customized;
+
     /**
      * Sets the datatype
      * 
@@ -86,7 +96,7 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
      */
     public SMHISourceBuilder(DataType dataType, SMHILocation location)
     {
-	this((url) -> DataSupplierFactory.createURLFetcher(url).get(), dataType, location);
+	this(URL_FETCHER, dataType, location);
     }
 
     /**
@@ -130,15 +140,7 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
 
 	    setNameExtractor((source) -> source.split("\\R+")[1].split(";")[0]);
 	    setUnitExtractor((source) -> source.split("\\R+")[3].split(";")[2]);
-	    setRowExtractor((source) ->
-	    {
-		String[] rows = source.split("\\R+");
-		for (int i = 0; i < 20; i++)
-		    if (rows[i]
-			    .startsWith("Från Datum Tid (UTC);Till Datum Tid (UTC);Representativt dygn;")) return Arrays
-				    .asList(Arrays.copyOfRange(source.split("\\R+"), i + 1, rows.length));
-		throw new DataSourceBuilderException("Incorrect data format!");
-	    });
+	    setHeader((row) -> row.startsWith("Från Datum Tid (UTC);Till Datum Tid (UTC);Representativt dygn;"));
 	    setDataExtractor(dataType.data_extractor);
 	}
 	catch (Exception exception)
@@ -147,6 +149,86 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
 		    exception));
 	}
 
+	// Other fetchers may give other data for the same url
+	customized = dataFetcher != URL_FETCHER;
+	constructed = true;
+    }
+
+    private void customize()
+    {
+	if (constructed) customized = true;
+    }
+
+    @Override
+    public SMHISourceBuilder setName(String name)
+    {
+	customize();
+	super.setName(name);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setUnit(String unit)
+    {
+	customize();
+	super.setUnit(unit);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setNameExtractor(Function<String, String> nameExtractor)
+    {
+	customize();
+	super.setNameExtractor(nameExtractor);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setUnitExtractor(Function<String, String> unitExtractor)
+    {
+	customize();
+	super.setUnitExtractor(unitExtractor);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setRowExtractor(Function<String, List<String>> rowExtractor)
+    {
+	customize();
+	super.setRowExtractor(rowExtractor);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setHeader(Function<String, Boolean> header)
+    {
+	customize();
+	super.setHeader(header);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setRowFilter(Function<String, Boolean> rowFilter)
+    {
+	customize();
+	super.setRowFilter(rowFilter);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setDataExtractor(BiConsumer<String, BiConsumer<LocalDate, Double>> dataExtractor)
+    {
+	customize();
+	super.setDataExtractor(dataExtractor);
+	return this;
+    }
+
+    @Override
+    public SMHISourceBuilder setSourceSupplier(Supplier<String> sourceSupplier)
+    {
+	customize();
+	super.setSourceSupplier(sourceSupplier);
+	return this;
     }
 
     /**
@@ -185,7 +267,7 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
      */
     public SMHISourceBuilder setPeriod(Period period)
     {
-	return setPeriod((url) -> DataSupplierFactory.createURLFetcher(url).get(), period);
+	return setPeriod(URL_FETCHER, period);
     }
 
     /**
@@ -202,9 +284,10 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
     public SMHISourceBuilder setPeriod(Function<String, String> dataFetcher, Period period)
     {
 	if (!isAvailable(period)) throw new DataSourceBuilderException("Unavailable period");
+	if (dataFetcher != URL_FETCHER) customize();
 	this.period = period;
 
-	setSourceSupplier(() ->
+	super.setSourceSupplier(() ->
 	{
 	    @SuppressWarnings("unchecked")
 	    String csv_url = ((Map<String, List<Map<String, List<Map<String, String>>>>>) new Genson()
@@ -221,6 +304,24 @@ public class SMHISourceBuilder extends CSVDataSourceBuilder
 	return this;
     }
 
+    /**
+     * The url of the picked period, which tells both the location and the
+     * datatype<br>
+     * <br>
+     * The name, unit, source and extractors are only decided by the url as
+     * long as they are the ones set by the constructor, and the data is
+     * fetched from SMHI, so builders where any of them have been set again
+     * have no configuration. Neither have builders of other periods than
+     * {@link Period#OLD}, as the data of the latest periods changes every
+     * day
+     */
+    @Override
+    protected Object getConfiguration()
+    {
+	if (customized || period != Period.OLD) return null;
+	return periods.get(period);
+    }
+
     /**
      * Specifies a period to get data from
      */
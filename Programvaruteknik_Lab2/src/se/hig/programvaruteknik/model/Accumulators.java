@@ -0,0 +1,480 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * The {@link Accumulator Accumulators} behind the built-in
+ * {@link MergeType MergeTypes}
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+class Accumulators
+{
+    private Accumulators()
+    {
+
+    }
+
+    /**
+     * Sums values with Kahan summation, using constant memory
+     */
+    static class Sum implements Accumulator
+    {
+	private double sum = 0;
+	private double compensation = 0;
+	private double simpleSum = 0;
+
+	@Override
+	public void accept(double value)
+	{
+	    add(value);
+	    simpleSum += value;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    double sum = Kernels.sum(values, from, to);
+	    add(sum);
+	    simpleSum += sum;
+	}
+
+	private void add(double value)
+	{
+	    double corrected = value - compensation;
+	    double total = sum + corrected;
+	    compensation = (total - sum) - corrected;
+	    sum = total;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    Sum sum = (Sum) other;
+	    add(sum.sum);
+	    add(-sum.compensation);
+	    simpleSum += sum.simpleSum;
+	}
+
+	double getSum()
+	{
+	    double total = sum - compensation;
+	    // Infinite values makes the compensation NaN
+	    if (Double.isNaN(total) && Double.isInfinite(simpleSum)) return simpleSum;
+	    return total;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return getSum();
+	}
+    }
+
+    /**
+     * Sums values one after another without compensation, which rounds the
+     * same way as {@link DataSourceBuilder#REDUCER_SUM}
+     */
+    static class PlainSum implements Accumulator
+    {
+	// Adding a value to negative zero gives the value, even for zeros
+	private double sum = -0d;
+	private boolean empty = true;
+
+	@Override
+	public void accept(double value)
+	{
+	    sum += value;
+	    empty = false;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    PlainSum sum = (PlainSum) other;
+	    this.sum += sum.sum;
+	    empty &= sum.empty;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    if (empty) throw new NoSuchElementException("No value present");
+	    return sum;
+	}
+    }
+
+    /**
+     * Averages values, using constant memory
+     */
+    static class Average extends Sum
+    {
+	private long count = 0;
+
+	@Override
+	public void accept(double value)
+	{
+	    super.accept(value);
+	    count++;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    super.acceptAll(values, from, to);
+	    count += to - from;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    super.combine(other);
+	    count += ((Average) other).count;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return count == 0 ? 0d : getSum() / count;
+	}
+    }
+
+    /**
+     * Keeps all values in the order they are added
+     */
+    static abstract class Values implements Accumulator
+    {
+	protected double[] values = new double[8];
+	protected int size = 0;
+
+	@Override
+	public void accept(double value)
+	{
+	    if (size == values.length) values = Arrays.copyOf(values, size * 2);
+	    values[size++] = value;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    append(values, from, to - from);
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    Values others = (Values) other;
+	    append(others.values, 0, others.size);
+	}
+
+	private void append(double[] source, int from, int length)
+	{
+	    if (size + length > values.length)
+		values = Arrays.copyOf(values, Math.max(size + length, size * 2));
+	    System.arraycopy(source, from, values, size, length);
+	    size += length;
+	}
+    }
+
+    /**
+     * Takes the value in the middle of the sorted values, or the average of
+     * the two middle values if there is an even number of them<br>
+     * <br>
+     * The values are partially sorted in place, in linear time
+     */
+    static class Median extends Values
+    {
+	@Override
+	public Double finish()
+	{
+	    if (size == 0) return 0d;
+
+	    int middle = size / 2;
+	    double upper = select(values, 0, size, middle);
+	    if (size % 2 == 1) return upper;
+
+	    // Everything before the middle is now at most the upper value, so
+	    // the lower middle value is the largest of them
+	    double lower = values[0];
+	    for (int i = 1; i < middle; i++)
+		lower = Math.max(lower, values[i]);
+	    return (lower + upper) / 2;
+	}
+    }
+
+    /**
+     * Finds the value that would be at an index if the slice was sorted,
+     * with quickselect<br>
+     * <br>
+     * The slice is reordered so that the values before the index are at most
+     * the found value and the values after it are at least the found value
+     * 
+     * @param values
+     *            The values
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @param index
+     *            The index, relative to the start of the slice
+     * @return The value at the index
+     */
+    static double select(double[] values, int from, int to, int index)
+    {
+	int target = from + index;
+	int low = from;
+	int high = to - 1;
+	while (low < high)
+	{
+	    double pivot = medianOfThree(values[low], values[(low + high) >>> 1], values[high]);
+
+	    // Hoare partitioning, which stays linear when many values are equal
+	    int i = low;
+	    int j = high;
+	    while (i <= j)
+	    {
+		while (values[i] < pivot)
+		    i++;
+		while (values[j] > pivot)
+		    j--;
+		if (i <= j)
+		{
+		    double swap = values[i];
+		    values[i++] = values[j];
+		    values[j--] = swap;
+		}
+	    }
+
+	    if (target <= j)
+		high = j;
+	    else if (target >= i)
+		low = i;
+	    else
+		// Between the partitions, everything equals the pivot
+		return values[target];
+	}
+	return values[target];
+    }
+
+    private static double medianOfThree(double a, double b, double c)
+    {
+	return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * Takes the smallest value
+     */
+    static class Min implements Accumulator
+    {
+	private double min = Double.POSITIVE_INFINITY;
+	private boolean empty = true;
+
+	@Override
+	public void accept(double value)
+	{
+	    min = Math.min(min, value);
+	    empty = false;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    min = Math.min(min, Kernels.min(values, from, to));
+	    empty &= from == to;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    Min others = (Min) other;
+	    min = Math.min(min, others.min);
+	    empty &= others.empty;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return empty ? 0d : min;
+	}
+    }
+
+    /**
+     * Takes the largest value
+     */
+    static class Max implements Accumulator
+    {
+	private double max = Double.NEGATIVE_INFINITY;
+	private boolean empty = true;
+
+	@Override
+	public void accept(double value)
+	{
+	    max = Math.max(max, value);
+	    empty = false;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    max = Math.max(max, Kernels.max(values, from, to));
+	    empty &= from == to;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    Max others = (Max) other;
+	    max = Math.max(max, others.max);
+	    empty &= others.empty;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return empty ? 0d : max;
+	}
+    }
+
+    /**
+     * Counts the values
+     */
+    static class Count implements Accumulator
+    {
+	private long count = 0;
+
+	@Override
+	public void accept(double value)
+	{
+	    count++;
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    count += to - from;
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    count += ((Count) other).count;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return (double) count;
+	}
+    }
+
+    /**
+     * Takes the standard deviation in a single pass with Welford's
+     * algorithm, using constant memory<br>
+     * <br>
+     * Accumulators are combined with the pairwise update of Chan et al.
+     */
+    static class Deviation implements Accumulator
+    {
+	private final boolean sample;
+
+	private long count = 0;
+	private double mean = 0;
+	private double squares = 0;
+
+	Deviation(boolean sample)
+	{
+	    this.sample = sample;
+	}
+
+	@Override
+	public void accept(double value)
+	{
+	    count++;
+	    double delta = value - mean;
+	    mean += delta / count;
+	    squares += delta * (value - mean);
+	}
+
+	@Override
+	public void acceptAll(double[] values, int from, int to)
+	{
+	    // Two passes over the slice, so it can be summed in lanes
+	    if (from == to) return;
+	    double sliceMean = Kernels.sum(values, from, to) / (to - from);
+	    combine(to - from, sliceMean, Kernels.sumOfSquares(values, from, to, sliceMean));
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    Deviation others = (Deviation) other;
+	    combine(others.count, others.mean, others.squares);
+	}
+
+	private void combine(long otherCount, double otherMean, double otherSquares)
+	{
+	    if (otherCount == 0) return;
+	    if (count == 0)
+	    {
+		count = otherCount;
+		mean = otherMean;
+		squares = otherSquares;
+		return;
+	    }
+
+	    long total = count + otherCount;
+	    double delta = otherMean - mean;
+	    mean += delta * otherCount / total;
+	    squares += otherSquares + delta * delta * ((double) count * otherCount / total);
+	    count = total;
+	}
+
+	@Override
+	public Double finish()
+	{
+	    long divisor = sample ? count - 1 : count;
+	    if (divisor <= 0) return 0d;
+	    return Math.sqrt(squares / divisor);
+	}
+    }
+
+    /**
+     * Collects the values and merges them with
+     * {@link MergeType#merge(List)} when finished<br>
+     * <br>
+     * Used for merge types that are only lambdas
+     */
+    static class Buffered implements Accumulator
+    {
+	private final MergeType mergeType;
+	private final List<Double> values = new ArrayList<>();
+
+	Buffered(MergeType mergeType)
+	{
+	    this.mergeType = mergeType;
+	}
+
+	@Override
+	public void accept(double value)
+	{
+	    values.add(value);
+	}
+
+	@Override
+	public void combine(Accumulator other)
+	{
+	    values.addAll(((Buffered) other).values);
+	}
+
+	@Override
+	public Double finish()
+	{
+	    return mergeType.merge(values);
+	}
+    }
+}
@@ -0,0 +1,458 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * A {@link DataSource} that keeps its data in two columns: a sorted array of
+ * epoch days and an array of values<br>
+ * <br>
+ * A value costs 12 bytes instead of a tree node, a {@link LocalDate} and a
+ * {@link Double}. The map from {@link ColumnarDataSource#getData()}
+ * is a read-only view over the columns that creates its keys and values on
+ * the fly, so prefer the primitive accessors or
+ * {@link DataSource#forEachValue(DataSource.DayValueConsumer)} in loops<br>
+ * <br>
+ * Built sources may have days with null values, which are marked in a
+ * bitmap. They are in the map, but are skipped by the primitive loops and
+ * the summary
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class ColumnarDataSource implements DataSource
+{
+    private final String name;
+    private final String unit;
+    private final String sourceName;
+    private final String sourceLink;
+
+    private final int[] epochDays;
+    private final double[] values;
+    private final BitSet nulls;
+
+    private SortedMap<LocalDate, Double> view = null;
+    private DataSummary summary;
+    private final long version;
+
+    /**
+     * Wraps columns that are already checked, without copying them
+     */
+    ColumnarDataSource(String name, String unit, String sourceName, String sourceLink, int[] epochDays, double[] values)
+    {
+	this(name, unit, sourceName, sourceLink, epochDays, values, null, null, 0);
+    }
+
+    /**
+     * Wraps columns that are already checked and summarized, without
+     * copying them<br>
+     * <br>
+     * The indices set in nulls, which is null if there are none, are days
+     * with null values
+     */
+    ColumnarDataSource(String name, String unit, String sourceName, String sourceLink, int[] epochDays, double[] values, BitSet nulls, DataSummary summary, long version)
+    {
+	this.name = name;
+	this.unit = unit;
+	this.sourceName = sourceName;
+	this.sourceLink = sourceLink;
+	this.epochDays = epochDays;
+	this.values = values;
+	this.nulls = nulls == null || nulls.isEmpty() ? null : nulls;
+	this.summary = summary;
+	this.version = version;
+    }
+
+    /**
+     * Creates a source from columns, which are copied
+     * 
+     * @param name
+     *            The name
+     * @param unit
+     *            The unit
+     * @param sourceName
+     *            The name of the source or null
+     * @param sourceLink
+     *            The link of the source or null
+     * @param epochDays
+     *            The {@link LocalDate#toEpochDay() epoch days}, in increasing
+     *            order
+     * @param values
+     *            The value of each day
+     * @return The source
+     * @throws IllegalArgumentException
+     *             If the columns have different lengths or the days are not
+     *             in increasing order
+     */
+    public static ColumnarDataSource of(String name, String unit, String sourceName, String sourceLink, int[] epochDays, double[] values)
+    {
+	if (epochDays.length != values.length) throw new IllegalArgumentException("Columns of different lengths: " + epochDays.length + " and " + values.length);
+	for (int i = 1; i < epochDays.length; i++)
+	    if (epochDays[i] <= epochDays[i - 1]) throw new IllegalArgumentException("Days not in increasing order at index " + i);
+
+	return new ColumnarDataSource(name, unit, sourceName, sourceLink, epochDays.clone(), values.clone());
+    }
+
+    /**
+     * Creates a source from sorted data<br>
+     * <br>
+     * Null values are left out
+     * 
+     * @param name
+     *            The name
+     * @param unit
+     *            The unit
+     * @param sourceName
+     *            The name of the source or null
+     * @param sourceLink
+     *            The link of the source or null
+     * @param data
+     *            The data, in date order
+     * @return The source
+     * @throws ArithmeticException
+     *             If a date is too far from 1970 to fit the columns
+     */
+    static ColumnarDataSource of(String name, String unit, String sourceName, String sourceLink, SortedMap<LocalDate, Double> data)
+    {
+	int[] epochDays = new int[data.size()];
+	double[] values = new double[data.size()];
+	int size = 0;
+	for (Entry<LocalDate, Double> entry : data.entrySet())
+	{
+	    if (entry.getValue() == null) continue;
+	    epochDays[size] = Math.toIntExact(entry.getKey().toEpochDay());
+	    values[size] = entry.getValue();
+	    size++;
+	}
+
+	if (size < epochDays.length)
+	{
+	    epochDays = Arrays.copyOf(epochDays, size);
+	    values = Arrays.copyOf(values, size);
+	}
+	return new ColumnarDataSource(name, unit, sourceName, sourceLink, epochDays, values);
+    }
+
+    /**
+     * Copies any source into columns
+     * 
+     * @param source
+     *            The source
+     * @return The columnar source, or the source itself if it already is
+     *         one
+     * @throws ArithmeticException
+     *             If a date is too far from 1970 to fit the columns
+     */
+    public static ColumnarDataSource of(DataSource source)
+    {
+	if (source instanceof ColumnarDataSource) return (ColumnarDataSource) source;
+	return of(
+		source.getName(),
+		source.getUnit(),
+		source.getSourceName(),
+		source.getSourceLink(),
+		DataCollectionBuilder.sortedData(source));
+    }
+
+    @Override
+    public String getName()
+    {
+	return name;
+    }
+
+    @Override
+    public String getUnit()
+    {
+	return unit;
+    }
+
+    @Override
+    public String getSourceName()
+    {
+	return sourceName;
+    }
+
+    @Override
+    public String getSourceLink()
+    {
+	return sourceLink;
+    }
+
+    /**
+     * Get the number of days, including the days with null values
+     * 
+     * @return The number of days
+     */
+    public int size()
+    {
+	return epochDays.length;
+    }
+
+    /**
+     * Get the day at an index
+     * 
+     * @param index
+     *            The index
+     * @return The {@link LocalDate#toEpochDay() epoch day}
+     */
+    public int getEpochDay(int index)
+    {
+	return epochDays[index];
+    }
+
+    /**
+     * Get the value at an index
+     * 
+     * @param index
+     *            The index
+     * @return The value, or NaN if the day have a null value
+     */
+    public double getValue(int index)
+    {
+	return isNull(index) ? Double.NaN : values[index];
+    }
+
+    /**
+     * Get whether the day at an index have a null value
+     * 
+     * @param index
+     *            The index
+     * @return True if the value is null
+     */
+    public boolean isNull(int index)
+    {
+	return nulls != null && nulls.get(index);
+    }
+
+    /**
+     * The value at an index, boxed for the map view
+     */
+    private Double boxedValue(int index)
+    {
+	return isNull(index) ? null : values[index];
+    }
+
+    /**
+     * Finds the index of a day with a binary search
+     * 
+     * @param epochDay
+     *            The {@link LocalDate#toEpochDay() epoch day}
+     * @return The index of the day, or (-(insertion point) - 1) if it have
+     *         no value, as {@link Arrays#binarySearch(int[], int)}
+     */
+    public int indexOf(long epochDay)
+    {
+	if (epochDay > Integer.MAX_VALUE) return -epochDays.length - 1;
+	if (epochDay < Integer.MIN_VALUE) return -1;
+	return Arrays.binarySearch(epochDays, (int) epochDay);
+    }
+
+    /**
+     * Get the value of a date
+     * 
+     * @param date
+     *            The date
+     * @return The value, or null if the date have no value or a null value
+     */
+    public Double getValue(LocalDate date)
+    {
+	int index = indexOf(date.toEpochDay());
+	return index < 0 ? null : boxedValue(index);
+    }
+
+    /**
+     * The first index with a day on or after the given one
+     */
+    private int lowerBound(long epochDay)
+    {
+	int index = indexOf(epochDay);
+	return index < 0 ? -index - 1 : index;
+    }
+
+    @Override
+    public void forEachValue(DayValueConsumer consumer)
+    {
+	for (int i = 0; i < epochDays.length; i++)
+	    if (!isNull(i)) consumer.accept(epochDays[i], values[i]);
+    }
+
+    @Override
+    public void forEachValue(LocalDate from, LocalDate to, DayValueConsumer consumer)
+    {
+	if (from != null && to != null && from.isAfter(to)) throw new IllegalArgumentException("The range ends before it starts: " + from + " to " + to);
+
+	int end = to == null ? epochDays.length : lowerBound(to.toEpochDay());
+	for (int i = from == null ? 0 : lowerBound(from.toEpochDay()); i < end; i++)
+	    if (!isNull(i)) consumer.accept(epochDays[i], values[i]);
+    }
+
+    /**
+     * Get the summary of the values<br>
+     * <br>
+     * Built sources are summarized when they are built, others on the first
+     * call
+     * 
+     * @return The summary
+     */
+    @Override
+    public DataSummary getSummary()
+    {
+	if (summary == null) summary = DataSummary.of(this);
+	return summary;
+    }
+
+    @Override
+    public long getVersion()
+    {
+	return version;
+    }
+
+    /**
+     * Get a read-only, date-sorted view of the data<br>
+     * <br>
+     * The view is created on the first call, and looks up dates with a
+     * binary search
+     * 
+     * @return The data
+     */
+    @Override
+    public SortedMap<LocalDate, Double> getData()
+    {
+	if (view == null) view = new ColumnView(0, epochDays.length);
+	return view;
+    }
+
+    /**
+     * A read-only view of the indices from (inclusive) and to (exclusive)
+     */
+    private class ColumnView extends AbstractMap<LocalDate, Double> implements SortedMap<LocalDate, Double>
+    {
+	private final int from;
+	private final int to;
+
+	private ColumnView(int from, int to)
+	{
+	    this.from = from;
+	    this.to = to;
+	}
+
+	private int find(Object key)
+	{
+	    if (!(key instanceof LocalDate)) return -1;
+	    int index = indexOf(((LocalDate) key).toEpochDay());
+	    return index >= from && index < to ? index : -1;
+	}
+
+	/**
+	 * The first index in this view with a date on or after the given one
+	 */
+	private int lowerBound(LocalDate date)
+	{
+	    return Math.min(Math.max(ColumnarDataSource.this.lowerBound(date.toEpochDay()), from), to);
+	}
+
+	@Override
+	public int size()
+	{
+	    return to - from;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+	    return find(key) >= 0;
+	}
+
+	@Override
+	public Double get(Object key)
+	{
+	    int index = find(key);
+	    return index < 0 ? null : boxedValue(index);
+	}
+
+	@Override
+	public Comparator<? super LocalDate> comparator()
+	{
+	    return null;
+	}
+
+	@Override
+	public SortedMap<LocalDate, Double> subMap(LocalDate fromKey, LocalDate toKey)
+	{
+	    if (fromKey.isAfter(toKey)) throw new IllegalArgumentException("fromKey > toKey");
+
+	    return new ColumnView(lowerBound(fromKey), lowerBound(toKey));
+	}
+
+	@Override
+	public SortedMap<LocalDate, Double> headMap(LocalDate toKey)
+	{
+	    return new ColumnView(from, lowerBound(toKey));
+	}
+
+	@Override
+	public SortedMap<LocalDate, Double> tailMap(LocalDate fromKey)
+	{
+	    return new ColumnView(lowerBound(fromKey), to);
+	}
+
+	@Override
+	public LocalDate firstKey()
+	{
+	    if (from == to) throw new NoSuchElementException();
+	    return LocalDate.ofEpochDay(epochDays[from]);
+	}
+
+	@Override
+	public LocalDate lastKey()
+	{
+	    if (from == to) throw new NoSuchElementException();
+	    return LocalDate.ofEpochDay(epochDays[to - 1]);
+	}
+
+	@Override
+	public Set<Entry<LocalDate, Double>> entrySet()
+	{
+	    return new AbstractSet<Entry<LocalDate, Double>>()
+	    {
+		@Override
+		public int size()
+		{
+		    return to - from;
+		}
+
+		@Override
+		public Iterator<Entry<LocalDate, Double>> iterator()
+		{
+		    return new Iterator<Entry<LocalDate, Double>>()
+		    {
+			private int index = from;
+
+			@Override
+			public boolean hasNext()
+			{
+			    return index < to;
+			}
+
+			@Override
+			public Entry<LocalDate, Double> next()
+			{
+			    if (index >= to) throw new NoSuchElementException();
+			    Entry<LocalDate, Double> entry = new SimpleImmutableEntry<>(LocalDate.ofEpochDay(epochDays[index]), boxedValue(index));
+			    index++;
+			    return entry;
+			}
+		    };
+		}
+	    };
+	}
+    }
+}
@@ -0,0 +1,74 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A {@link DateResolution} made of lambdas<br>
+ * <br>
+ * Resolutions with the same name are equal, so the name must describe all
+ * that sets the buckets apart
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+class CustomResolution implements DateResolution
+{
+    private final String name;
+    private final LongUnaryOperator bucketOf;
+    private final LongUnaryOperator startOfBucket;
+    private final LongFunction<String> keyOfBucket;
+
+    /**
+     * @param name
+     *            Describes the buckets
+     * @param bucketOf
+     *            Gives the bucket of an epoch day
+     * @param startOfBucket
+     *            Gives the first epoch day of a bucket
+     * @param keyOfBucket
+     *            Gives the key of a bucket
+     */
+    CustomResolution(String name, LongUnaryOperator bucketOf, LongUnaryOperator startOfBucket, LongFunction<String> keyOfBucket)
+    {
+	this.name = name;
+	this.bucketOf = bucketOf;
+	this.startOfBucket = startOfBucket;
+	this.keyOfBucket = keyOfBucket;
+    }
+
+    @Override
+    public long toBucket(long epochDay)
+    {
+	return bucketOf.applyAsLong(epochDay);
+    }
+
+    @Override
+    public long bucketStart(long bucket)
+    {
+	return startOfBucket.applyAsLong(bucket);
+    }
+
+    @Override
+    public String bucketKey(long bucket)
+    {
+	return keyOfBucket.apply(bucket);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+	return object instanceof CustomResolution && name.equals(((CustomResolution) object).name);
+    }
+
+    @Override
+    public int hashCode()
+    {
+	return name.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+	return name;
+    }
+}
@@ -1,5 +1,6 @@
 package se.hig.programvaruteknik.model;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -15,7 +16,7 @@ import se.hig.programvaruteknik.JSONFormatter;
  */
 public class DataCollection
 {
-    private Map<String, MatchedDataPair> data;
+    private final Map<String, MatchedDataPair> data;
     private String title;
     private String xUnit;
     private String yUnit;
@@ -89,7 +90,10 @@ public class DataCollection
     }
 
     /**
-     * Populates a collection of data
+     * Populates a collection of data<br>
+     * <br>
+     * The data is not copied, so it must not be changed after the collection
+     * is created
      * 
      * @param title
      *            The title for this collection
@@ -102,7 +106,7 @@ public class DataCollection
      */
     public DataCollection(String title, DataSource sourceX, DataSource sourceY, Map<String, MatchedDataPair> data)
     {
-	this.data = data;
+	this.data = Collections.unmodifiableMap(data);
 	this.title = title;
 
 	xUnit = sourceX.getUnit();
@@ -148,7 +152,7 @@ public class DataCollection
     /**
      * Get the data in this collection
      * 
-     * @return The data in this collection
+     * @return A read-only view of the data in this collection
      */
     public Map<String, MatchedDataPair> getData()
     {
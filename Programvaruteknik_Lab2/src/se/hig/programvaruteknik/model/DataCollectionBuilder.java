@@ -1,15 +1,29 @@
 package se.hig.programvaruteknik.model;
 
-import java.util.List;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import se.hig.programvaruteknik.model.DataSource.DayValueConsumer;
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
 
 /**
  * A builder for {@link DataCollection}s<br>
  * <br>
- * Merge types defaults to {@link MergeType#SUM}
+ * Merge types defaults to {@link MergeType#SUM}<br>
+ * Match mode defaults to {@link MatchMode#HASH}<br>
+ * Matched data is only cached outside of the builder when a
+ * {@link #setMatchCache(MatchResultCache) match cache} is set
  * 
  * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
  */
@@ -20,10 +34,77 @@ public class DataCollectionBuilder
     private String title = null;
     private DataSource xData;
     private DataSource yData;
-    private Resolution resolution;
+    private DateResolution resolution;
+    private SlidingWindow window = null;
+    private LocalDate rangeFrom = null;
+    private LocalDate rangeTo = null;
+    private MatchMode matchMode = MatchMode.HASH;
+    private MatchResultCache matchCache = null;
+
+    private CachedValue<DataSummary> xSummary = new CachedValue<>(() -> xData.getSummary());
+    private CachedValue<DataSummary> ySummary = new CachedValue<>(() -> yData.getSummary());
+
+    private CachedValue<RollUp> rollUp = new CachedValue<>(() -> new RollUp(xScan(), xMergeType, yScan(), yMergeType));
+
+    private CachedValue<Map<String, MatchedDataPair>> resultingData = new CachedValue<>(() ->
+    {
+	if (matchCache == null) return Collections.unmodifiableMap(match());
+	return matchCache.get(getCacheKey(), this::match);
+    });
+
+    /**
+     * How the values of the two sources are matched against each other
+     */
+    public enum MatchMode
+    {
+	/**
+	 * Groups both sources into hash tables and joins them on their keys<br>
+	 * <br>
+	 * The resulting data is ordered by date
+	 */
+	HASH((builder) -> matchData(builder.xScan(), builder.xMergeType, builder.yScan(), builder.yMergeType, builder.resolution)),
+
+	/**
+	 * Walks both sources in date order at the same time and joins the
+	 * buckets as they are passed<br>
+	 * <br>
+	 * The resulting data is ordered by date<br>
+	 * Sources whose data is not a {@link SortedMap} are sorted first
+	 */
+	MERGE((builder) -> mergeData(builder.xScan(), builder.xMergeType, builder.yScan(), builder.yMergeType, builder.resolution)),
 
-    private CachedValue<Map<String, MatchedDataPair>> resultingData = new CachedValue<>(
-	    () -> matchData(xData, xMergeType, yData, yMergeType, resolution));
+	/**
+	 * Splits the dates of the sources into ranges that follows the bounds
+	 * of the resolution and matches the ranges on the
+	 * {@link ForkJoinPool#commonPool() common pool}<br>
+	 * <br>
+	 * Each range is matched as in {@link MatchMode#MERGE}
+	 */
+	PARALLEL((builder) -> parallelMergeData(builder.xScan(), builder.xMergeType, builder.yScan(), builder.yMergeType, builder.resolution)),
+
+	/**
+	 * Merges the values of the sources day by day once and derives the
+	 * other resolutions from the days, see {@link RollUp}<br>
+	 * <br>
+	 * The days are kept by the builder until a source or a merge type is
+	 * changed, so switching resolution doesn't read the sources again<br>
+	 * The resulting data is ordered by date
+	 */
+	ROLL_UP((builder) -> builder.rollUp.get().match(builder.resolution));
+
+	private final Matcher matcher;
+
+	MatchMode(Matcher matcher)
+	{
+	    this.matcher = matcher;
+	}
+    }
+
+    @FunctionalInterface
+    private interface Matcher
+    {
+	public Map<String, MatchedDataPair> match(DataCollectionBuilder builder);
+    }
 
     /**
      * Creation of a builder that builds a {@link DataCollection}<br>
@@ -34,7 +115,8 @@ public class DataCollectionBuilder
      * </li>
      * <li>{@link DataCollectionBuilder#setYDatasource(DataSource) Y datasource}
      * </li>
-     * <li>{@link DataCollectionBuilder#setResolution(Resolution) Resolution}
+     * <li>{@link DataCollectionBuilder#setResolution(DateResolution) Resolution}
+     * or {@link DataCollectionBuilder#setWindow(SlidingWindow) Window}
      * </li>
      * </ul>
      * Optional:
@@ -45,6 +127,14 @@ public class DataCollectionBuilder
      * </li>
      * <li>{@link DataCollectionBuilder#setYMergeType(MergeType) Y mergetype}
      * </li>
+     * <li>{@link DataCollectionBuilder#setMatchMode(MatchMode) Match mode}
+     * </li>
+     * <li>{@link DataCollectionBuilder#setMatchCache(MatchResultCache) Match
+     * cache}
+     * </li>
+     * <li>{@link DataCollectionBuilder#setDateRange(LocalDate, LocalDate) Date
+     * range}
+     * </li>
      * </ul>
      */
     public DataCollectionBuilder()
@@ -72,7 +162,7 @@ public class DataCollectionBuilder
      * @param resolution
      *            The resolution
      */
-    public DataCollectionBuilder(DataSource xData, DataSource yData, Resolution resolution)
+    public DataCollectionBuilder(DataSource xData, DataSource yData, DateResolution resolution)
     {
 	setXDatasource(xData);
 	setYDatasource(yData);
@@ -89,6 +179,8 @@ public class DataCollectionBuilder
     public DataCollectionBuilder setXDatasource(DataSource xData)
     {
 	this.xData = xData;
+	xSummary.clearCache();
+	rollUp.clearCache();
 	resultingData.clearCache();
 	return this;
     }
@@ -103,10 +195,93 @@ public class DataCollectionBuilder
     public DataCollectionBuilder setYDatasource(DataSource yData)
     {
 	this.yData = yData;
+	ySummary.clearCache();
+	rollUp.clearCache();
 	resultingData.clearCache();
 	return this;
     }
 
+    /**
+     * Replaces the x datasource with a newer version of it that have only
+     * gained data after the last date of the current x datasource<br>
+     * <br>
+     * Only the buckets from the one that holds that date and onwards are
+     * matched again, the rest of an already matched result is kept<br>
+     * If nothing have been matched yet or if the new datasource doesn't hold
+     * the same value at that date, everything is matched again
+     * 
+     * @param xData
+     *            The new version of the datasource
+     * @return This builder (for chaining)
+     */
+    public DataCollectionBuilder updateXDatasource(DataSource xData)
+    {
+	LocalDate changedFrom = appendedFrom(this.xData, xData);
+	this.xData = xData;
+	xSummary.clearCache();
+	rollUp.clearCache();
+	rematchFrom(changedFrom);
+	return this;
+    }
+
+    /**
+     * Replaces the y datasource with a newer version of it that have only
+     * gained data after the last date of the current y datasource<br>
+     * <br>
+     * Only the buckets from the one that holds that date and onwards are
+     * matched again, the rest of an already matched result is kept<br>
+     * If nothing have been matched yet or if the new datasource doesn't hold
+     * the same value at that date, everything is matched again
+     * 
+     * @param yData
+     *            The new version of the datasource
+     * @return This builder (for chaining)
+     */
+    public DataCollectionBuilder updateYDatasource(DataSource yData)
+    {
+	LocalDate changedFrom = appendedFrom(this.yData, yData);
+	this.yData = yData;
+	ySummary.clearCache();
+	rollUp.clearCache();
+	rematchFrom(changedFrom);
+	return this;
+    }
+
+    private static LocalDate appendedFrom(DataSource oldSource, DataSource newSource)
+    {
+	if (oldSource == null || newSource == null) return null;
+
+	SortedMap<LocalDate, Double> oldData = sortedData(oldSource);
+	if (oldData.isEmpty()) return null;
+
+	LocalDate last = oldData.lastKey();
+	if (!Objects.equals(oldData.get(last), newSource.getData().get(last))) return null;
+	return last;
+    }
+
+    private void rematchFrom(LocalDate changedFrom)
+    {
+	if (changedFrom == null || resolution == null || window != null || !resultingData.haveValue())
+	{
+	    resultingData.clearCache();
+	    return;
+	}
+
+	// No bucket after the one holding the changed date can have been
+	// matched, as the changed source had no data there
+	LocalDate from = resolution.startOf(changedFrom);
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>(resultingData.get());
+	matches.remove(resolution.bucketKey(resolution.toBucket(changedFrom)));
+	mergeData(
+		sortedData(xScan()).tailMap(from),
+		xMergeType,
+		sortedData(yScan()).tailMap(from),
+		yMergeType,
+		resolution,
+		matches);
+	resultingData.set(matchCache == null ? Collections.unmodifiableMap(matches) : matchCache.put(getCacheKey(), matches));
+    }
+
     /**
      * Sets the title
      * 
@@ -127,7 +302,7 @@ public class DataCollectionBuilder
      *            The new resolution
      * @return This builder (for chaining)
      */
-    public DataCollectionBuilder setResolution(Resolution resolution)
+    public DataCollectionBuilder setResolution(DateResolution resolution)
     {
 	this.resolution = resolution;
 	resultingData.clearCache();
@@ -144,6 +319,23 @@ public class DataCollectionBuilder
 	return title == null ? (xData.getName() + " : " + yData.getName()) : title;
     }
 
+    /**
+     * Sets sliding windows to match the sources in instead of the
+     * resolution<br>
+     * <br>
+     * The match mode doesn't apply to windows
+     * 
+     * @param window
+     *            The windows or null to match in the resolution
+     * @return This builder (for chaining)
+     */
+    public DataCollectionBuilder setWindow(SlidingWindow window)
+    {
+	this.window = window;
+	resultingData.clearCache();
+	return this;
+    }
+
     /**
      * Sets how to merge the x values
      * 
@@ -154,6 +346,7 @@ public class DataCollectionBuilder
     public DataCollectionBuilder setXMergeType(MergeType xMergeType)
     {
 	this.xMergeType = xMergeType;
+	rollUp.clearCache();
 	resultingData.clearCache();
 	return this;
     }
@@ -168,57 +361,392 @@ public class DataCollectionBuilder
     public DataCollectionBuilder setYMergeType(MergeType yMergeType)
     {
 	this.yMergeType = yMergeType;
+	rollUp.clearCache();
 	resultingData.clearCache();
 	return this;
     }
 
-    static List<String> collectKeys(DataSource source, Resolution resolution)
+    /**
+     * Sets how the values of the sources are matched
+     * 
+     * @param matchMode
+     *            The match mode
+     * @return This builder (for chaining)
+     */
+    public DataCollectionBuilder setMatchMode(MatchMode matchMode)
     {
-	return source.getData().keySet().stream().map(resolution::toKey).distinct().collect(Collectors.toList());
+	this.matchMode = matchMode;
+	resultingData.clearCache();
+	return this;
     }
 
-    static Map<String, MatchedDataPair> matchData(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType, Resolution resolution)
+    /**
+     * Sets the cache to keep matched data in, so that other builders with
+     * the same sources, merge types, resolution and match mode can reuse it<br>
+     * <br>
+     * No cache is used by default
+     * 
+     * @param matchCache
+     *            The cache, such as {@link MatchResultCache#getShared()}, or
+     *            null to not cache matched data outside of this builder
+     * @return This builder (for chaining)
+     */
+    public DataCollectionBuilder setMatchCache(MatchResultCache matchCache)
     {
-	List<String> xKeys = collectKeys(xSource, resolution);
-	List<String> yKeys = collectKeys(ySource, resolution);
+	this.matchCache = matchCache;
+	resultingData.clearCache();
+	return this;
+    }
 
-	List<String> commonKeys = xKeys.stream().filter((key) -> yKeys.contains(key)).collect(Collectors.toList());
+    /**
+     * Sets a range of dates to match the sources in<br>
+     * <br>
+     * The range is pushed down into the scans of the sources, see
+     * {@link DataSource#getData(LocalDate, LocalDate)}, so only the data in
+     * the range is read. Buckets at the ends of the range only holds the
+     * dates inside it
+     * 
+     * @param from
+     *            The first date of the range, or null for no first date
+     * @param to
+     *            The date after the last date of the range, or null for no
+     *            last date
+     * @return This builder (for chaining)
+     * @throws IllegalArgumentException
+     *             If the range ends before it starts
+     */
+    public DataCollectionBuilder setDateRange(LocalDate from, LocalDate to)
+    {
+	if (from != null && to != null && from.isAfter(to)) throw new IllegalArgumentException("The range ends before it starts: " + from + " to " + to);
+
+	rangeFrom = from;
+	rangeTo = to;
+	rollUp.clearCache();
+	resultingData.clearCache();
+	return this;
+    }
+
+    private DataSource xScan()
+    {
+	return rangeFrom == null && rangeTo == null ? xData : new RangedSource(xData, rangeFrom, rangeTo);
+    }
+
+    private DataSource yScan()
+    {
+	return rangeFrom == null && rangeTo == null ? yData : new RangedSource(yData, rangeFrom, rangeTo);
+    }
+
+    private Map<String, MatchedDataPair> match()
+    {
+	if (window != null) return window.match(xScan(), xMergeType, yScan(), yMergeType);
+
+	// Sources whose dates are too far apart have nothing to match
+	if (!xSummary.get().overlaps(ySummary.get(), resolution)) return new LinkedHashMap<>();
+	return matchMode.matcher.match(this);
+    }
+
+    private MatchResultCache.Key getCacheKey()
+    {
+	Object grouping = window != null ? window : resolution;
+	if (rangeFrom != null || rangeTo != null) grouping = Arrays.asList(grouping, rangeFrom, rangeTo);
+	return new MatchResultCache.Key(xData, xMergeType, yData, yMergeType, grouping, window != null ? null : matchMode);
+    }
+
+    /**
+     * The part of a source that is in a range of dates
+     */
+    private static class RangedSource implements DataSource
+    {
+	private final DataSource source;
+	private final LocalDate from;
+	private final LocalDate to;
+
+	private RangedSource(DataSource source, LocalDate from, LocalDate to)
+	{
+	    this.source = source;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	public String getName()
+	{
+	    return source.getName();
+	}
+
+	@Override
+	public String getUnit()
+	{
+	    return source.getUnit();
+	}
+
+	@Override
+	public Map<LocalDate, Double> getData()
+	{
+	    return source.getData(from, to);
+	}
+
+	@Override
+	public void forEachValue(DayValueConsumer consumer)
+	{
+	    source.forEachValue(from, to, consumer);
+	}
+    }
+
+    static Map<Long, Accumulator> groupData(DataSource source, MergeType mergeType, DateResolution resolution)
+    {
+	Map<Long, Accumulator> groups = new HashMap<>();
 
-	Function<DataSource, Map<String, List<Double>>> dataOrganizer = (source) -> source
-		.getData()
-		.entrySet()
-		.stream()
-		.filter((entry) -> commonKeys.contains(resolution.toKey(entry)))
-		.collect(
-			Collectors.groupingBy(
-				(entry) -> resolution.toKey(entry),
-				Collectors.mapping((entry) -> entry.getValue(), Collectors.toList())));
+	// Sources are usually sorted, so only look up the group when the bucket
+	// changes
+	source.forEachValue(new DayValueConsumer()
+	{
+	    private long bucket = 0;
+	    private Accumulator group = null;
 
-	Map<String, List<Double>> xData = dataOrganizer.apply(xSource);
-	Map<String, List<Double>> yData = dataOrganizer.apply(ySource);
+	    @Override
+	    public void accept(long epochDay, double value)
+	    {
+		long dayBucket = resolution.toBucket(epochDay);
+		if (group == null || dayBucket != bucket)
+		{
+		    bucket = dayBucket;
+		    group = groups.computeIfAbsent(bucket, (key) -> mergeType.createAccumulator());
+		}
+		group.accept(value);
+	    }
+	});
+	return groups;
+    }
+
+    static Map<String, MatchedDataPair> matchData(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType, DateResolution resolution)
+    {
+	Map<Long, Accumulator> xData = groupData(xSource, xMergeType, resolution);
+	Map<Long, Accumulator> yData = groupData(ySource, yMergeType, resolution);
+
+	// Probe the larger index with the buckets of the smaller one
+	boolean xIsSmaller = xData.size() <= yData.size();
+	Map<Long, Accumulator> probe = xIsSmaller ? xData : yData;
+	Map<Long, Accumulator> index = xIsSmaller ? yData : xData;
+
+	long[] buckets = new long[probe.size()];
+	int count = 0;
+	for (Long bucket : probe.keySet())
+	    if (index.containsKey(bucket)) buckets[count++] = bucket;
 
-	Map<String, MatchedDataPair> matches = commonKeys.stream().collect(
-		Collectors.<String, String, MatchedDataPair> toMap(
-			key -> key,
-			key -> new MatchedDataPair(
-				xMergeType.merge(xData.get(key)),
-				yMergeType.merge(yData.get(key)))));
+	// Emit in bucket order, so the result is ordered by date as in the
+	// other match modes
+	Arrays.sort(buckets, 0, count);
+
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+	for (int i = 0; i < count; i++)
+	    matches.put(
+		    resolution.bucketKey(buckets[i]),
+		    new MatchedDataPair(xData.get(buckets[i]).finish(), yData.get(buckets[i]).finish()));
 
 	return matches;
     }
 
-    private Map<String, MatchedDataPair> copyMap(Map<String, MatchedDataPair> source)
+    static SortedMap<LocalDate, Double> sortedData(DataSource source)
     {
-	return source.entrySet().stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+	Map<LocalDate, Double> data = source.getData();
+	if (data instanceof SortedMap && ((SortedMap<LocalDate, Double>) data).comparator() == null)
+	    return (SortedMap<LocalDate, Double>) data;
+	return new TreeMap<>(data);
+    }
+
+    static Map<String, MatchedDataPair> mergeData(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType, DateResolution resolution)
+    {
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+	mergeData(sortedData(xSource), xMergeType, sortedData(ySource), yMergeType, resolution, matches);
+	return matches;
+    }
+
+    static void mergeData(SortedMap<LocalDate, Double> xData, MergeType xMergeType, SortedMap<LocalDate, Double> yData, MergeType yMergeType, DateResolution resolution, Map<String, MatchedDataPair> matches)
+    {
+	BucketCursor x = new BucketCursor(xData, xMergeType, resolution);
+	BucketCursor y = new BucketCursor(yData, yMergeType, resolution);
+
+	boolean haveX = x.next();
+	boolean haveY = y.next();
+	while (haveX && haveY)
+	{
+	    if (x.bucket == y.bucket)
+	    {
+		matches.put(
+			resolution.bucketKey(x.bucket),
+			new MatchedDataPair(x.accumulator.finish(), y.accumulator.finish()));
+		haveX = x.next();
+		haveY = y.next();
+	    }
+	    // Buckets are numbered in date order, so the lower bucket can never
+	    // match anything on the other side
+	    else if (x.bucket < y.bucket)
+		haveX = x.next();
+	    else
+		haveY = y.next();
+	}
+    }
+
+    static Map<String, MatchedDataPair> parallelMergeData(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType, DateResolution resolution)
+    {
+	SortedMap<LocalDate, Double> xData = sortedData(xSource);
+	SortedMap<LocalDate, Double> yData = sortedData(ySource);
+	if (xData.isEmpty() || yData.isEmpty()) return new LinkedHashMap<>();
+
+	LocalDate first = xData.firstKey().isAfter(yData.firstKey()) ? xData.firstKey() : yData.firstKey();
+	LocalDate last = xData.lastKey().isAfter(yData.lastKey()) ? xData.lastKey() : yData.lastKey();
+
+	return ForkJoinPool.commonPool().invoke(
+		new MatchTask(xData, xMergeType, yData, yMergeType, resolution, resolution.startOf(first), last.plusDays(1)));
+    }
+
+    /**
+     * Matches the data in a range of dates, splitting it on the bounds of the
+     * resolution until the range is small enough
+     */
+    @SuppressWarnings("serial")
+    private static class MatchTask extends RecursiveTask<Map<String, MatchedDataPair>>
+    {
+	/**
+	 * The number of days under which a range is matched directly
+	 */
+	private static final long THRESHOLD = 1 << 10;
+
+	private final SortedMap<LocalDate, Double> xData;
+	private final MergeType xMergeType;
+	private final SortedMap<LocalDate, Double> yData;
+	private final MergeType yMergeType;
+	private final DateResolution resolution;
+	private final LocalDate from;
+	private final LocalDate to;
+
+	private MatchTask(SortedMap<LocalDate, Double> xData, MergeType xMergeType, SortedMap<LocalDate, Double> yData, MergeType yMergeType, DateResolution resolution, LocalDate from, LocalDate to)
+	{
+	    this.xData = xData;
+	    this.xMergeType = xMergeType;
+	    this.yData = yData;
+	    this.yMergeType = yMergeType;
+	    this.resolution = resolution;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected Map<String, MatchedDataPair> compute()
+	{
+	    long days = to.toEpochDay() - from.toEpochDay();
+	    LocalDate split = days > THRESHOLD ? resolution.startOf(from.plusDays(days / 2)) : from;
+
+	    if (!split.isAfter(from))
+	    {
+		Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+		mergeData(
+			xData.subMap(from, to),
+			xMergeType,
+			yData.subMap(from, to),
+			yMergeType,
+			resolution,
+			matches);
+		return matches;
+	    }
+
+	    MatchTask right = new MatchTask(xData, xMergeType, yData, yMergeType, resolution, split, to);
+	    right.fork();
+	    Map<String, MatchedDataPair> matches = new MatchTask(
+		    xData,
+		    xMergeType,
+		    yData,
+		    yMergeType,
+		    resolution,
+		    from,
+		    split).compute();
+	    matches.putAll(right.join());
+	    return matches;
+	}
     }
 
     /**
-     * Build the {@link DataCollection}
+     * Walks date-sorted data one bucket at a time, folding the values of each
+     * bucket into an {@link Accumulator}
+     */
+    private static class BucketCursor
+    {
+	private final Iterator<Entry<LocalDate, Double>> iterator;
+	private final MergeType mergeType;
+	private final DateResolution resolution;
+
+	private Entry<LocalDate, Double> pending = null;
+	private long pendingBucket = 0;
+
+	private long bucket = 0;
+	private Accumulator accumulator = null;
+
+	private BucketCursor(SortedMap<LocalDate, Double> data, MergeType mergeType, DateResolution resolution)
+	{
+	    this.iterator = data.entrySet().iterator();
+	    this.mergeType = mergeType;
+	    this.resolution = resolution;
+	}
+
+	private boolean next()
+	{
+	    if (pending == null)
+	    {
+		if (!iterator.hasNext()) return false;
+		pending = iterator.next();
+		pendingBucket = resolution.toBucket(pending.getKey());
+	    }
+
+	    bucket = pendingBucket;
+	    accumulator = mergeType.createAccumulator();
+	    accumulator.accept(pending.getValue());
+	    pending = null;
+
+	    while (iterator.hasNext())
+	    {
+		Entry<LocalDate, Double> entry = iterator.next();
+		long entryBucket = resolution.toBucket(entry.getKey());
+		if (entryBucket != bucket)
+		{
+		    pending = entry;
+		    pendingBucket = entryBucket;
+		    break;
+		}
+		accumulator.accept(entry.getValue());
+	    }
+
+	    return true;
+	}
+    }
+
+    /**
+     * Build the {@link DataCollection}<br>
+     * <br>
+     * The matched data is shared, read-only, between the results of this
+     * builder until it has to be matched again
      * 
      * @return the resulting {@link DataCollection}
      */
     public DataCollection getResult()
     {
-	return new DataCollection(getTitle(), xData, yData, copyMap(resultingData.get()));
+	return new DataCollection(getTitle(), xData, yData, resultingData.get());
+    }
+
+    /**
+     * Build the {@link DataCollection} with its data stored outside the
+     * heap<br>
+     * <br>
+     * Unless the data is already matched, it is matched without being kept
+     * in the {@link MatchResultCache}, so the only lasting copy is the one
+     * outside the heap<br>
+     * The caller should {@link OffHeapDataCollection#close() close} the
+     * result once it is no longer used
+     * 
+     * @return the resulting {@link OffHeapDataCollection}
+     */
+    public OffHeapDataCollection getOffHeapResult()
+    {
+	return new OffHeapDataCollection(getTitle(), xData, yData, resultingData.haveValue() ? resultingData.get() : match());
     }
 }
@@ -1,7 +1,11 @@
 package se.hig.programvaruteknik.model;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Interface representing an source of data
@@ -51,6 +55,138 @@ public interface DataSource
      */
     public Map<LocalDate, Double> getData();
 
+    /**
+     * Get the data in a range of dates<br>
+     * <br>
+     * Sources whose data is a date-sorted {@link SortedMap} give a view of
+     * it, so the range is found in O(log n). Other sources are scanned
+     * 
+     * @param from
+     *            The first date of the range, or null for no first date
+     * @param to
+     *            The date after the last date of the range, or null for no
+     *            last date
+     * @return A read-only, date-sorted view of the data in the range
+     * @throws IllegalArgumentException
+     *             If the range ends before it starts
+     */
+    public default SortedMap<LocalDate, Double> getData(LocalDate from, LocalDate to)
+    {
+	if (from != null && to != null && from.isAfter(to)) throw new IllegalArgumentException("The range ends before it starts: " + from + " to " + to);
+
+	Map<LocalDate, Double> data = getData();
+	if (data instanceof SortedMap && ((SortedMap<LocalDate, Double>) data).comparator() == null)
+	{
+	    SortedMap<LocalDate, Double> range = (SortedMap<LocalDate, Double>) data;
+	    if (from != null) range = range.tailMap(from);
+	    if (to != null) range = range.headMap(to);
+	    return Collections.unmodifiableSortedMap(range);
+	}
+
+	SortedMap<LocalDate, Double> range = new TreeMap<>();
+	for (Entry<LocalDate, Double> entry : data.entrySet())
+	{
+	    if (from != null && entry.getKey().isBefore(from)) continue;
+	    if (to != null && !entry.getKey().isBefore(to)) continue;
+	    range.put(entry.getKey(), entry.getValue());
+	}
+	return Collections.unmodifiableSortedMap(range);
+    }
+
+    /**
+     * Gives every day and value of the data source to a consumer, in the
+     * order of {@link DataSource#getData()}<br>
+     * <br>
+     * Sources that keep primitive data can do this without boxing
+     * 
+     * @param consumer
+     *            Takes each {@link LocalDate#toEpochDay() epoch day} and value
+     */
+    public default void forEachValue(DayValueConsumer consumer)
+    {
+	for (Entry<LocalDate, Double> entry : getData().entrySet())
+	    consumer.accept(entry.getKey().toEpochDay(), entry.getValue());
+    }
+
+    /**
+     * Gives every day and value in a range of dates to a consumer, in date
+     * order
+     * 
+     * @param from
+     *            The first date of the range, or null for no first date
+     * @param to
+     *            The date after the last date of the range, or null for no
+     *            last date
+     * @param consumer
+     *            Takes each {@link LocalDate#toEpochDay() epoch day} and value
+     * @throws IllegalArgumentException
+     *             If the range ends before it starts
+     * @see DataSource#getData(LocalDate, LocalDate)
+     */
+    public default void forEachValue(LocalDate from, LocalDate to, DayValueConsumer consumer)
+    {
+	for (Entry<LocalDate, Double> entry : getData(from, to).entrySet())
+	    consumer.accept(entry.getKey().toEpochDay(), entry.getValue());
+    }
+
+    /**
+     * Get the count, minimum, maximum, mean and date range of the values<br>
+     * <br>
+     * Scans the values by default, sources that know them beforehand
+     * should override this
+     * 
+     * @return The summary
+     */
+    public default DataSummary getSummary()
+    {
+	return DataSummary.of(this);
+    }
+
+    /**
+     * Get a fingerprint of the data, that is equal for sources with the
+     * same days and values<br>
+     * <br>
+     * Scans the values by default, sources built by a
+     * {@link DataSourceBuilder} compute it while they are built
+     * 
+     * @return The fingerprint
+     * @see DataSummary#getFingerprint()
+     */
+    public default long getFingerprint()
+    {
+	return getSummary().getFingerprint();
+    }
+
+    /**
+     * Get the version of the source<br>
+     * <br>
+     * A source that is refreshed gets a higher version than the source it
+     * replaces. Sources that are never refreshed have version 0
+     * 
+     * @return The version
+     */
+    public default long getVersion()
+    {
+	return 0;
+    }
+
+    /**
+     * Takes a day and its value
+     */
+    @FunctionalInterface
+    public interface DayValueConsumer
+    {
+	/**
+	 * Takes a value
+	 * 
+	 * @param epochDay
+	 *            The {@link LocalDate#toEpochDay() epoch day}
+	 * @param value
+	 *            The value
+	 */
+	public void accept(long epochDay, double value);
+    }
+
     /**
      * Represent an error related to the datasource
      */
@@ -1,13 +1,19 @@
 package se.hig.programvaruteknik.model;
 
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 
-import java.util.TreeMap;
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
 
 /**
  * Generic builder of datasources
@@ -66,16 +72,27 @@ public abstract class DataSourceBuilder
     }
 
     private BiFunction<LocalDate, Double, Boolean> dataFilter;
-    private BiFunction<LocalDate, List<Double>, Double> dataReducer = REDUCER_SUM;
+    private EpochDayFilter epochDayFilter;
+    private BiFunction<LocalDate, List<Double>, Double> dataReducer;
+    private MergeType mergeReducer = DEFAULT_REDUCER;
+    private boolean parallel = false;
+    private long version = 0;
 
     /**
-     * Reduces conflicting keys by summing them
+     * Reduces conflicting keys by summing them<br>
+     * <br>
+     * The default reducer sums in the same way, without boxing the values
      */
     public static final BiFunction<LocalDate, List<Double>, Double> REDUCER_SUM = (key, list) -> list
 	    .stream()
 	    .reduce(Double::sum)
 	    .get();
 
+    /**
+     * Sums like {@link DataSourceBuilder#REDUCER_SUM}, one value at a time
+     */
+    private static final MergeType DEFAULT_REDUCER = MergeType.of(Accumulators.PlainSum::new);
+
     /**
      * The name of the datasource
      */
@@ -91,6 +108,26 @@ public abstract class DataSourceBuilder
     public DataSourceBuilder setDataFilter(BiFunction<LocalDate, Double, Boolean> dataFilter)
     {
 	this.dataFilter = dataFilter;
+	this.epochDayFilter = null;
+	return this;
+    }
+
+    /**
+     * Sets the data filter, on primitive days and values<br>
+     * <br>
+     * Replaces any filter set with
+     * {@link DataSourceBuilder#setDataFilter(BiFunction)}, and filters
+     * without boxing the values
+     * 
+     * @param epochDayFilter
+     *            The data filter, which removes the values it returns true
+     *            for
+     * @return This builder
+     */
+    public DataSourceBuilder setEpochDayFilter(EpochDayFilter epochDayFilter)
+    {
+	this.epochDayFilter = epochDayFilter;
+	this.dataFilter = null;
 	return this;
     }
 
@@ -106,6 +143,27 @@ public abstract class DataSourceBuilder
     public DataSourceBuilder setDataReducer(BiFunction<LocalDate, List<Double>, Double> dataReducer)
     {
 	this.dataReducer = dataReducer;
+	this.mergeReducer = null;
+	return this;
+    }
+
+    /**
+     * Sets the data reducer to a {@link MergeType}<br>
+     * <br>
+     * Reduces data with same key to a single value, by giving the values to
+     * an {@link MergeType.Accumulator accumulator} as they are generated
+     * instead of collecting them into a list<br>
+     * The default reducer sums the values in the order they are pushed,
+     * which gives the same sums as {@link DataSourceBuilder#REDUCER_SUM}
+     * 
+     * @param dataReducer
+     *            The data reducer
+     * @return This builder
+     */
+    public DataSourceBuilder setDataReducer(MergeType dataReducer)
+    {
+	this.mergeReducer = dataReducer;
+	this.dataReducer = null;
 	return this;
     }
 
@@ -140,10 +198,78 @@ public abstract class DataSourceBuilder
 	return this;
     }
 
+    /**
+     * Sets whether the data should be reduced and filtered in parallel<br>
+     * <br>
+     * A parallel build collects the generated values, splits them into
+     * ranges of dates and reduces and filters each range on the
+     * {@link ForkJoinPool#commonPool() common pool}, so the reducer and the
+     * filter must be safe to call from several threads at once. The built
+     * source is the same as from a sequential build. Worth it for sources of
+     * millions of values, small sources are built in a single range<br>
+     * <br>
+     * Builds are sequential by default
+     * 
+     * @param parallel
+     *            True to build in parallel
+     * @return This builder
+     */
+    public DataSourceBuilder setParallel(boolean parallel)
+    {
+	this.parallel = parallel;
+	return this;
+    }
+
     protected abstract Map<LocalDate, List<Double>> generateData();
 
     /**
-     * Builds the data source
+     * Pushes the generated data to a consumer, one value at a time<br>
+     * <br>
+     * Builders that read their data row by row should override this, so the
+     * rows go straight into the built source without being collected into
+     * a map first. This is called once per build. The values of a date must
+     * be pushed after each other, as each date is reduced as soon as the
+     * next one starts, but the dates may come in any order. A date that
+     * gets values again after another date fails the build<br>
+     * <br>
+     * Pushes the data from {@link DataSourceBuilder#generateData()} by
+     * default. Dates with empty lists are reduced from no values, as when
+     * the map was reduced directly
+     * 
+     * @param consumer
+     *            Takes each date and value
+     */
+    protected void generateData(BiConsumer<LocalDate, Double> consumer)
+    {
+	Map<LocalDate, List<Double>> generatedData = generateData();
+	if (generatedData == null) throw new DataSourceBuilderException("Missing data");
+
+	for (Entry<LocalDate, List<Double>> entry : generatedData.entrySet())
+	{
+	    if (entry.getValue().isEmpty() && consumer instanceof RowConsumer) ((RowConsumer) consumer).acceptEmpty(entry.getKey());
+	    for (Double value : entry.getValue())
+		consumer.accept(entry.getKey(), value);
+	}
+    }
+
+    /**
+     * Builds the data source<br>
+     * <br>
+     * The data is generated once, see
+     * {@link DataSourceBuilder#generateData(BiConsumer)}, and each date is
+     * reduced as soon as its values are pushed, so only the reduced days are
+     * held. They are sorted and filtered when all dates are pushed. A
+     * {@link DataSourceBuilder#setParallel(boolean) parallel} build instead
+     * collects the values, and splits them into ranges of dates<br>
+     * The built source is a {@link ColumnarDataSource}, and its data is a
+     * date-sorted {@link SortedMap} view. Days that are reduced to null are
+     * kept with null values, unless the
+     * {@link DataSourceBuilder#setDataFilter(BiFunction) data filter} removes
+     * them<br>
+     * The {@link DataSource#getSummary() summary} of the source is computed
+     * as the days are filtered<br>
+     * Each build gets a higher {@link DataSource#getVersion() version} than
+     * the sources built by this builder before it
      * 
      * @return The data source
      * @throws DataSourceBuilderException
@@ -151,82 +277,646 @@ public abstract class DataSourceBuilder
      */
     public final DataSource build()
     {
-	return new DataSource()
+	try
+	{
+	    checkSettings();
+
+	    ColumnSink sink = parallel ? buildParallel() : buildSequential();
+	    return sink.toSource(++version);
+	}
+	catch (Exception exception)
+	{
+	    throw (DataSourceBuilderException) (exception instanceof DataSourceBuilderException ? exception : new DataSourceBuilderException(
+		    exception));
+	}
+    }
+
+    /**
+     * Builds a data source that generates its data on first use<br>
+     * <br>
+     * The name and unit are resolved on their first use, without generating
+     * any data. The data is {@link DataSourceBuilder#build() built} once,
+     * when the data, the summary or the fingerprint is first asked for. A
+     * failed build is retried on the next use<br>
+     * <br>
+     * The source is safe to use from several threads, but this builder
+     * must not be changed until the source has built its data
+     * 
+     * @return The lazy data source
+     * @throws DataSourceBuilderException
+     *             If the name, the unit or the reducer is missing
+     */
+    public final DataSource buildLazy()
+    {
+	checkSettings();
+	return new LazySource(getSourceName(), getSourceLink());
+    }
+
+    /**
+     * Builds the data source, or gets the one built from the same
+     * configuration from the {@link DataSourceRegistry#getShared() shared
+     * registry}<br>
+     * <br>
+     * The source is registered under the class of this builder, its
+     * {@link DataSourceBuilder#getConfiguration() configuration}, the
+     * reducer, the filter and the source name and link. Builders without a
+     * configuration are built as usual
+     * 
+     * @return The data source
+     * @throws DataSourceBuilderException
+     *             If errors occurs
+     */
+    public final DataSource buildShared()
+    {
+	Object configuration = getConfiguration();
+	if (configuration == null) return build();
+
+	return DataSourceRegistry.getShared().get(
+		Arrays.asList(
+			getClass(),
+			configuration,
+			dataReducer,
+			mergeReducer,
+			dataFilter,
+			epochDayFilter,
+			getSourceName(),
+			getSourceLink()),
+		this::build);
+    }
+
+    /**
+     * Get what, together with the reducer and the filter, decides the built
+     * source, such as the url it is read from<br>
+     * <br>
+     * Builders that give equal configurations must build equal sources, see
+     * {@link DataSourceBuilder#buildShared()}, so the configuration must also
+     * cover the name, the unit and anything that extracts or filters the
+     * data. Builders where those can't be told apart must return null.
+     * Returns null by default, which means the sources can't be shared
+     * 
+     * @return The configuration, or null
+     */
+    protected Object getConfiguration()
+    {
+	return null;
+    }
+
+    private void checkSettings()
+    {
+	if (!name.canGiveValue()) throw new DataSourceBuilderException("Missing name");
+	if (!unit.canGiveValue()) throw new DataSourceBuilderException("Missing unit");
+	if (dataReducer == null && mergeReducer == null) throw new DataSourceBuilderException("Missing reducer");
+    }
+
+    /**
+     * A source that builds itself on first use<br>
+     * <br>
+     * Builds are done holding the lock of the builder, as the builder is
+     * not thread-safe
+     */
+    private class LazySource implements DataSource
+    {
+	private final String sourceName;
+	private final String sourceLink;
+
+	private volatile String name = null;
+	private volatile String unit = null;
+	private volatile DataSource source = null;
+
+	private LazySource(String sourceName, String sourceLink)
 	{
-	    private Map<LocalDate, Double> data;
+	    this.sourceName = sourceName;
+	    this.sourceLink = sourceLink;
+	}
 
-	    private String name = null;
-	    private String unit = null;
+	private DataSource load()
+	{
+	    DataSource loaded = source;
+	    if (loaded != null) return loaded;
 
-	    private String sourceName = null;
-	    private String sourceLink = null;
+	    synchronized (DataSourceBuilder.this)
+	    {
+		if (source == null) source = build();
+		return source;
+	    }
+	}
 
+	@Override
+	public String getName()
+	{
+	    String loaded = name;
+	    if (loaded != null) return loaded;
+
+	    synchronized (DataSourceBuilder.this)
 	    {
-		try
-		{
-		    Map<LocalDate, List<Double>> generatedData = generateData();
-		    if (generatedData == null) throw new DataSourceBuilderException("Missing data");
-		    if (!DataSourceBuilder.this.name
-			    .canGiveValue()) throw new DataSourceBuilderException("Missing name");
-		    if (!DataSourceBuilder.this.unit
-			    .canGiveValue()) throw new DataSourceBuilderException("Missing unit");
-		    if (dataReducer == null) throw new DataSourceBuilderException("Missing reducer");
-
-		    name = DataSourceBuilder.this.name.get();
-		    unit = DataSourceBuilder.this.unit.get();
-
-		    sourceName = DataSourceBuilder.this.getSourceName();
-		    sourceLink = DataSourceBuilder.this.getSourceLink();
-
-		    Map<LocalDate, Double> rawData = new TreeMap<>();
-		    for (Entry<LocalDate, List<Double>> entry : generatedData.entrySet())
-		    {
-			Double value = dataReducer.apply(entry.getKey(), entry.getValue());
-			if (dataFilter == null || !dataFilter.apply(entry.getKey(), value))
-			{
-			    rawData.put(entry.getKey(), value);
-			}
-		    }
-
-		    data = Collections.unmodifiableMap(rawData);
-		}
-		catch (Exception exception)
-		{
-		    throw (DataSourceBuilderException) (exception instanceof DataSourceBuilderException ? exception : new DataSourceBuilderException(
-			    exception));
-		}
+		if (name == null) name = resolve(DataSourceBuilder.this.name);
+		return name;
 	    }
+	}
 
-	    @Override
-	    public String getUnit()
+	@Override
+	public String getUnit()
+	{
+	    String loaded = unit;
+	    if (loaded != null) return loaded;
+
+	    synchronized (DataSourceBuilder.this)
 	    {
+		if (unit == null) unit = resolve(DataSourceBuilder.this.unit);
 		return unit;
 	    }
+	}
 
-	    @Override
-	    public String getName()
+	private String resolve(CachedValue<String> value)
+	{
+	    try
 	    {
-		return name;
+		return value.get();
+	    }
+	    catch (Exception exception)
+	    {
+		throw new DataSourceBuilderException(exception);
+	    }
+	}
+
+	@Override
+	public String getSourceName()
+	{
+	    return sourceName;
+	}
+
+	@Override
+	public String getSourceLink()
+	{
+	    return sourceLink;
+	}
+
+	@Override
+	public Map<LocalDate, Double> getData()
+	{
+	    return load().getData();
+	}
+
+	@Override
+	public SortedMap<LocalDate, Double> getData(LocalDate from, LocalDate to)
+	{
+	    return load().getData(from, to);
+	}
+
+	@Override
+	public void forEachValue(DayValueConsumer consumer)
+	{
+	    load().forEachValue(consumer);
+	}
+
+	@Override
+	public void forEachValue(LocalDate from, LocalDate to, DayValueConsumer consumer)
+	{
+	    load().forEachValue(from, to, consumer);
+	}
+
+	@Override
+	public DataSummary getSummary()
+	{
+	    return load().getSummary();
+	}
+
+	@Override
+	public long getFingerprint()
+	{
+	    return load().getFingerprint();
+	}
+
+	@Override
+	public long getVersion()
+	{
+	    return load().getVersion();
+	}
+    }
+
+    private ColumnSink buildSequential()
+    {
+	ColumnSink sink = new ColumnSink();
+	generateData(sink);
+	sink.finish();
+	return sink;
+    }
+
+    private ColumnSink buildParallel()
+    {
+	Rows rows = new Rows();
+	generateData(rows);
+
+	int ranges = (int) Math.max(1, Math.min(rows.size / BuildTask.THRESHOLD, ForkJoinPool.getCommonPoolParallelism() * 4L));
+	long span = (long) rows.maxDay - rows.minDay + 1;
+
+	// Sort the rows into their ranges, keeping each row as its day and
+	// index so a range can be sorted by date without losing the order the
+	// values were pushed in
+	int[] bounds = new int[ranges + 1];
+	for (int i = 0; i < rows.size; i++)
+	    bounds[rows.rangeOf(i, ranges, span) + 1]++;
+	for (int range = 0; range < ranges; range++)
+	    bounds[range + 1] += bounds[range];
+
+	long[] keys = new long[rows.size];
+	int[] next = Arrays.copyOf(bounds, ranges);
+	for (int i = 0; i < rows.size; i++)
+	    keys[next[rows.rangeOf(i, ranges, span)]++] = ((long) rows.days[i] << 32) | i;
+
+	ColumnSink[] sinks = new ColumnSink[ranges];
+	ForkJoinPool.commonPool().invoke(new BuildTask(rows, keys, bounds, sinks, 0, ranges));
+
+	// The ranges are in date order, so their columns are put after each
+	// other
+	ColumnSink sink = new ColumnSink();
+	for (ColumnSink rangeSink : sinks)
+	    sink.append(rangeSink);
+	return sink;
+    }
+
+    /**
+     * Takes the pushed values of a build, and the dates that have no values
+     */
+    private interface RowConsumer extends BiConsumer<LocalDate, Double>
+    {
+	/**
+	 * Takes a date without values, which is reduced from no values
+	 * 
+	 * @param date
+	 *            The date
+	 */
+	public void acceptEmpty(LocalDate date);
+    }
+
+    /**
+     * Generated values of a parallel build, in the order they were pushed<br>
+     * <br>
+     * Null values are kept as null, so they reach the reducer as in a
+     * sequential build
+     */
+    private static class Rows implements RowConsumer
+    {
+	private int[] days = new int[64];
+	private double[] values = new double[64];
+	private BitSet nulls = null;
+	private BitSet empties = null;
+	private int size = 0;
+
+	private int minDay = Integer.MAX_VALUE;
+	private int maxDay = Integer.MIN_VALUE;
+
+	@Override
+	public void accept(LocalDate date, Double value)
+	{
+	    int index = add(date);
+	    if (value == null)
+	    {
+		if (nulls == null) nulls = new BitSet();
+		nulls.set(index);
+	    }
+	    else
+		values[index] = value;
+	}
+
+	@Override
+	public void acceptEmpty(LocalDate date)
+	{
+	    int index = add(date);
+	    if (empties == null) empties = new BitSet();
+	    empties.set(index);
+	}
+
+	private int add(LocalDate date)
+	{
+	    if (size == days.length)
+	    {
+		days = Arrays.copyOf(days, size * 2);
+		values = Arrays.copyOf(values, size * 2);
+	    }
+	    int day = Math.toIntExact(date.toEpochDay());
+	    days[size] = day;
+	    minDay = Math.min(minDay, day);
+	    maxDay = Math.max(maxDay, day);
+	    return size++;
+	}
+
+	private boolean isNull(int index)
+	{
+	    return nulls != null && nulls.get(index);
+	}
+
+	private boolean isEmpty(int index)
+	{
+	    return empties != null && empties.get(index);
+	}
+
+	private int rangeOf(int index, int ranges, long span)
+	{
+	    return (int) (((long) days[index] - minDay) * ranges / span);
+	}
+    }
+
+    /**
+     * Reduces and filters ranges of rows into their own columns, splitting
+     * the ranges in halves until one is left
+     */
+    @SuppressWarnings("serial")
+    private class BuildTask extends RecursiveAction
+    {
+	/**
+	 * The number of rows under which a source is built in a single range
+	 */
+	private static final int THRESHOLD = 1 << 13;
+
+	private final Rows rows;
+	private final long[] keys;
+	private final int[] bounds;
+	private final ColumnSink[] sinks;
+	private final int from;
+	private final int to;
+
+	private BuildTask(Rows rows, long[] keys, int[] bounds, ColumnSink[] sinks, int from, int to)
+	{
+	    this.rows = rows;
+	    this.keys = keys;
+	    this.bounds = bounds;
+	    this.sinks = sinks;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute()
+	{
+	    if (to - from > 1)
+	    {
+		int split = (from + to) >>> 1;
+		invokeAll(new BuildTask(rows, keys, bounds, sinks, from, split), new BuildTask(rows, keys, bounds, sinks, split, to));
+		return;
+	    }
+
+	    // The index in the low bits keeps the values of a date in the order
+	    // they were pushed
+	    Arrays.sort(keys, bounds[from], bounds[to]);
+
+	    ColumnSink sink = new ColumnSink();
+	    for (int i = bounds[from]; i < bounds[to]; i++)
+	    {
+		int index = (int) keys[i];
+
+		// The values of a date must have been pushed after each other,
+		// as in a sequential build
+		if (i > bounds[from] && keys[i] >>> 32 == keys[i - 1] >>> 32 && index != (int) keys[i - 1] + 1)
+		    throw new DataSourceBuilderException(notGrouped(rows.days[index]));
+
+		if (rows.isEmpty(index))
+		    sink.openGroup(rows.days[index]);
+		else if (rows.isNull(index))
+		    sink.acceptNull(rows.days[index]);
+		else
+		    sink.acceptRow(rows.days[index], rows.values[index]);
+	    }
+	    sink.finish();
+	    sinks[from] = sink;
+	}
+    }
+
+    private static String notGrouped(int epochDay)
+    {
+	return "The values of " + LocalDate.ofEpochDay(epochDay) + " are not pushed after each other";
+    }
+
+    /**
+     * Reduces values into columns, one date at a time<br>
+     * <br>
+     * Only the values of the current date are held, the dates before it are
+     * already reduced. The dates may come in any order, the columns are
+     * sorted and filtered when finished
+     */
+    private class ColumnSink implements RowConsumer
+    {
+	private int[] epochDays = new int[64];
+	private double[] values = new double[64];
+	private BitSet nulls = null;
+	private int size = 0;
+	private boolean sorted = true;
+	private final DataSummary.Summarizer summarizer = new DataSummary.Summarizer();
+
+	private boolean open = false;
+	private int day = 0;
+	private List<Double> group = null;
+	private Accumulator accumulator = null;
+
+	// The first date with a null value for the merge type, which can't
+	// take null
+	private Integer nullDay = null;
+
+	@Override
+	public void accept(LocalDate date, Double value)
+	{
+	    int rowDay = Math.toIntExact(date.toEpochDay());
+	    if (value == null)
+		acceptNull(rowDay);
+	    else
+		acceptRow(rowDay, value.doubleValue());
+	}
+
+	@Override
+	public void acceptEmpty(LocalDate date)
+	{
+	    openGroup(Math.toIntExact(date.toEpochDay()));
+	}
+
+	private void acceptRow(int rowDay, double value)
+	{
+	    openGroup(rowDay);
+
+	    // Only the list of the boxed reducer needs the value boxed
+	    if (mergeReducer != null)
+		accumulator.accept(value);
+	    else
+		group.add(value);
+	}
+
+	private void acceptNull(int rowDay)
+	{
+	    openGroup(rowDay);
+
+	    if (mergeReducer == null)
+		group.add(null);
+	    else if (nullDay == null) nullDay = rowDay;
+	}
+
+	private void openGroup(int rowDay)
+	{
+	    if (open && rowDay == day) return;
+	    if (open) closeGroup();
+
+	    open = true;
+	    day = rowDay;
+	    if (mergeReducer != null)
+		accumulator = mergeReducer.createAccumulator();
+	    else
+		group = new ArrayList<>();
+	}
+
+	private void closeGroup()
+	{
+	    // The build fails when finished, so there is no need to reduce
+	    if (nullDay != null) return;
+
+	    Double reduced = mergeReducer != null ? accumulator.finish() : dataReducer.apply(LocalDate.ofEpochDay(day), group);
+
+	    if (size == epochDays.length)
+	    {
+		epochDays = Arrays.copyOf(epochDays, size * 2);
+		values = Arrays.copyOf(values, size * 2);
 	    }
+	    if (size > 0 && day <= epochDays[size - 1]) sorted = false;
 
-	    @Override
-	    public String getSourceName()
+	    epochDays[size] = day;
+	    if (reduced == null)
 	    {
-		return sourceName;
+		if (nulls == null) nulls = new BitSet();
+		nulls.set(size);
+		values[size] = Double.NaN;
 	    }
+	    else
+		values[size] = reduced;
+	    size++;
+	}
 
-	    @Override
-	    public String getSourceLink()
+	private void append(ColumnSink sink)
+	{
+	    if (size + sink.size > epochDays.length)
 	    {
-		return sourceLink;
+		epochDays = Arrays.copyOf(epochDays, size + sink.size);
+		values = Arrays.copyOf(values, size + sink.size);
 	    }
+	    System.arraycopy(sink.epochDays, 0, epochDays, size, sink.size);
+	    System.arraycopy(sink.values, 0, values, size, sink.size);
+	    if (sink.nulls != null)
+	    {
+		if (nulls == null) nulls = new BitSet();
+		for (int i = sink.nulls.nextSetBit(0); i >= 0; i = sink.nulls.nextSetBit(i + 1))
+		    nulls.set(size + i);
+	    }
+	    size += sink.size;
+	    summarizer.combine(sink.summarizer);
+	}
 
-	    @Override
-	    public Map<LocalDate, Double> getData()
+	private void finish()
+	{
+	    if (open) closeGroup();
+	    open = false;
+	    group = null;
+	    accumulator = null;
+
+	    if (nullDay != null) throw new DataSourceBuilderException("Null value at " + LocalDate.ofEpochDay(nullDay) + " can't be merged");
+	    if (!sorted) sort();
+	    filter();
+	}
+
+	/**
+	 * Sorts the columns by date
+	 * 
+	 * @throws DataSourceBuilderException
+	 *             If a date was reduced twice, as its values were not
+	 *             pushed after each other
+	 */
+	private void sort()
+	{
+	    long[] keys = new long[size];
+	    for (int i = 0; i < size; i++)
+		keys[i] = ((long) epochDays[i] << 32) | i;
+	    Arrays.sort(keys);
+
+	    int[] sortedDays = new int[size];
+	    double[] sortedValues = new double[size];
+	    BitSet sortedNulls = nulls == null ? null : new BitSet();
+	    for (int i = 0; i < size; i++)
 	    {
-		return data;
+		int index = (int) keys[i];
+		sortedDays[i] = epochDays[index];
+		if (i > 0 && sortedDays[i] == sortedDays[i - 1]) throw new DataSourceBuilderException(notGrouped(sortedDays[i]));
+
+		sortedValues[i] = values[index];
+		if (nulls != null && nulls.get(index)) sortedNulls.set(i);
 	    }
-	};
+
+	    epochDays = sortedDays;
+	    values = sortedValues;
+	    nulls = sortedNulls;
+	}
+
+	/**
+	 * Removes the days that the filter removes, in date order, and
+	 * summarizes the rest
+	 */
+	private void filter()
+	{
+	    int kept = 0;
+	    BitSet keptNulls = null;
+	    for (int i = 0; i < size; i++)
+	    {
+		int epochDay = epochDays[i];
+		double value = values[i];
+		if (nulls != null && nulls.get(i))
+		{
+		    // The primitive filter can't be given null, so only the
+		    // boxed one can remove the day
+		    if (dataFilter != null && dataFilter.apply(LocalDate.ofEpochDay(epochDay), null)) continue;
+
+		    if (keptNulls == null) keptNulls = new BitSet();
+		    keptNulls.set(kept);
+		}
+		else
+		{
+		    if (epochDayFilter != null ? epochDayFilter.test(epochDay, value) : dataFilter != null && dataFilter.apply(LocalDate.ofEpochDay(epochDay), value)) continue;
+		    summarizer.accept(epochDay, value);
+		}
+
+		epochDays[kept] = epochDay;
+		values[kept] = value;
+		kept++;
+	    }
+	    size = kept;
+	    nulls = keptNulls;
+	}
+
+	private DataSource toSource(long sourceVersion)
+	{
+	    return new ColumnarDataSource(
+		    name.get(),
+		    unit.get(),
+		    getSourceName(),
+		    getSourceLink(),
+		    Arrays.copyOf(epochDays, size),
+		    Arrays.copyOf(values, size),
+		    nulls,
+		    summarizer.toSummary(),
+		    sourceVersion);
+	}
+    }
+
+    /**
+     * Filters values by their {@link LocalDate#toEpochDay() epoch day},
+     * without boxing
+     */
+    @FunctionalInterface
+    public interface EpochDayFilter
+    {
+	/**
+	 * Tests a value
+	 * 
+	 * @param epochDay
+	 *            The {@link LocalDate#toEpochDay() epoch day}
+	 * @param value
+	 *            The value
+	 * @return True to remove the value
+	 */
+	public boolean test(int epochDay, double value);
     }
 
     /**
@@ -0,0 +1,149 @@
+package se.hig.programvaruteknik.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps one instance of each distinct {@link DataSource}, so callers that
+ * build the same source share it instead of holding copies of it<br>
+ * <br>
+ * Sources are registered under a key that describes everything that
+ * decides their data, such as the url, the extractors, the reducer and the
+ * filter. The sources are held weakly, so a source that no one else uses
+ * can be collected, after which it is built again on the next request
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class DataSourceRegistry
+{
+    private static final DataSourceRegistry shared = new DataSourceRegistry();
+
+    private final Map<Object, SourceReference> sources = new HashMap<>();
+    private final ReferenceQueue<DataSource> collected = new ReferenceQueue<>();
+
+    /**
+     * Get the registry that is shared by the whole process
+     * 
+     * @return The shared registry
+     */
+    public static DataSourceRegistry getShared()
+    {
+	return shared;
+    }
+
+    /**
+     * Gets the source registered under a key, or builds and registers it<br>
+     * <br>
+     * The source is built without holding the lock of the registry, so two
+     * threads that miss on the same key at the same time may both build it.
+     * Both then get the source that was registered first
+     * 
+     * @param key
+     *            The key, that must have a proper equals and hashCode
+     * @param builder
+     *            Builds the source if it is not registered
+     * @return The registered source
+     */
+    public DataSource get(Object key, Supplier<DataSource> builder)
+    {
+	DataSource source = lookup(key);
+	if (source != null) return source;
+
+	return register(key, builder.get());
+    }
+
+    /**
+     * Registers a source, unless a source is already registered under the
+     * key
+     * 
+     * @param key
+     *            The key
+     * @param source
+     *            The source
+     * @return The registered source, which is the given source unless
+     *         another was registered first
+     */
+    public synchronized DataSource register(Object key, DataSource source)
+    {
+	expunge();
+
+	SourceReference reference = sources.get(key);
+	DataSource registered = reference == null ? null : reference.get();
+	if (registered != null) return registered;
+
+	sources.put(key, new SourceReference(key, source, collected));
+	return source;
+    }
+
+    /**
+     * Get the source registered under a key
+     * 
+     * @param key
+     *            The key
+     * @return The source, or null if there is none
+     */
+    public synchronized DataSource lookup(Object key)
+    {
+	expunge();
+
+	SourceReference reference = sources.get(key);
+	return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Get the number of registered sources that have not been collected
+     * 
+     * @return The number of sources
+     */
+    public synchronized int size()
+    {
+	expunge();
+
+	// Collected sources may not be queued yet
+	int size = 0;
+	for (SourceReference reference : sources.values())
+	    if (reference.get() != null) size++;
+	return size;
+    }
+
+    /**
+     * Removes all sources
+     */
+    public synchronized void clear()
+    {
+	// References that are still queued are told apart by their keys no
+	// longer mapping to them
+	sources.clear();
+    }
+
+    /**
+     * Removes the keys of the sources that have been collected
+     */
+    private void expunge()
+    {
+	for (Reference<? extends DataSource> reference; (reference = collected.poll()) != null;)
+	{
+	    Object key = ((SourceReference) reference).key;
+	    if (sources.get(key) == reference) sources.remove(key);
+	}
+    }
+
+    /**
+     * A weak reference to a source, that knows the key it is registered
+     * under
+     */
+    private static class SourceReference extends WeakReference<DataSource>
+    {
+	private final Object key;
+
+	private SourceReference(Object key, DataSource source, ReferenceQueue<DataSource> queue)
+	{
+	    super(source, queue);
+	    this.key = key;
+	}
+    }
+}
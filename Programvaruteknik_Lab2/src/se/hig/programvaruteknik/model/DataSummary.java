@@ -0,0 +1,235 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDate;
+
+/**
+ * The count, minimum, maximum, mean and date range of the values of a
+ * {@link DataSource}<br>
+ * <br>
+ * Sources built by a {@link DataSourceBuilder} compute their summary while
+ * they are built, so asking for it costs nothing
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public final class DataSummary
+{
+    /**
+     * The summary of a source without values
+     */
+    public static final DataSummary EMPTY = new DataSummary(0, 0, Double.NaN, Double.NaN, 0, 0, Summarizer.fingerprint(0, 0));
+
+    private final int count;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final long firstDay;
+    private final long lastDay;
+    private final long fingerprint;
+
+    DataSummary(int count, double sum, double min, double max, long firstDay, long lastDay, long fingerprint)
+    {
+	this.count = count;
+	this.sum = sum;
+	this.min = min;
+	this.max = max;
+	this.firstDay = firstDay;
+	this.lastDay = lastDay;
+	this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Summarizes a source by scanning its values
+     * 
+     * @param source
+     *            The source
+     * @return The summary
+     */
+    public static DataSummary of(DataSource source)
+    {
+	Summarizer summarizer = new Summarizer();
+	source.forEachValue(summarizer);
+	return summarizer.toSummary();
+    }
+
+    /**
+     * Get whether the source have no values
+     * 
+     * @return True if there are no values
+     */
+    public boolean isEmpty()
+    {
+	return count == 0;
+    }
+
+    /**
+     * Get the number of values
+     * 
+     * @return The count
+     */
+    public int getCount()
+    {
+	return count;
+    }
+
+    /**
+     * Get the smallest value
+     * 
+     * @return The minimum, or NaN if there are no values
+     */
+    public double getMin()
+    {
+	return min;
+    }
+
+    /**
+     * Get the largest value
+     * 
+     * @return The maximum, or NaN if there are no values
+     */
+    public double getMax()
+    {
+	return max;
+    }
+
+    /**
+     * Get the sum of the values
+     * 
+     * @return The sum
+     */
+    public double getSum()
+    {
+	return sum;
+    }
+
+    /**
+     * Get the mean of the values
+     * 
+     * @return The mean, or NaN if there are no values
+     */
+    public double getMean()
+    {
+	return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Get the first date with a value
+     * 
+     * @return The date, or null if there are no values
+     */
+    public LocalDate getFirstDate()
+    {
+	return count == 0 ? null : LocalDate.ofEpochDay(firstDay);
+    }
+
+    /**
+     * Get the last date with a value
+     * 
+     * @return The date, or null if there are no values
+     */
+    public LocalDate getLastDate()
+    {
+	return count == 0 ? null : LocalDate.ofEpochDay(lastDay);
+    }
+
+    /**
+     * Get a 64-bit hash of the days and values<br>
+     * <br>
+     * Sources with the same days and values have the same fingerprint, no
+     * matter the order they give their values in. Different data gives
+     * different fingerprints with all but negligible probability
+     * 
+     * @return The fingerprint
+     */
+    public long getFingerprint()
+    {
+	return fingerprint;
+    }
+
+    /**
+     * Get whether the values of two sources can fall in the same bucket of a
+     * resolution
+     * 
+     * @param other
+     *            The summary of the other source
+     * @param resolution
+     *            The resolution
+     * @return False if the sources can't have any bucket in common
+     */
+    public boolean overlaps(DataSummary other, DateResolution resolution)
+    {
+	if (isEmpty() || other.isEmpty()) return false;
+	return resolution.toBucket(firstDay) <= resolution.toBucket(other.lastDay)
+		&& resolution.toBucket(other.firstDay) <= resolution.toBucket(lastDay);
+    }
+
+    /**
+     * Summarizes values as they are given
+     */
+    static class Summarizer implements DataSource.DayValueConsumer
+    {
+	private int count = 0;
+	private double sum = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private long firstDay = Long.MAX_VALUE;
+	private long lastDay = Long.MIN_VALUE;
+
+	// The sum of the hashes of the days and values, so the order of the
+	// values does not matter
+	private long hash = 0;
+
+	@Override
+	public void accept(long epochDay, double value)
+	{
+	    count++;
+	    sum += value;
+	    min = Math.min(min, value);
+	    max = Math.max(max, value);
+	    firstDay = Math.min(firstDay, epochDay);
+	    lastDay = Math.max(lastDay, epochDay);
+	    hash += mix(mix(epochDay) ^ Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Adds the values of another summarizer to this
+	 */
+	void combine(Summarizer other)
+	{
+	    count += other.count;
+	    sum += other.sum;
+	    min = Math.min(min, other.min);
+	    max = Math.max(max, other.max);
+	    firstDay = Math.min(firstDay, other.firstDay);
+	    lastDay = Math.max(lastDay, other.lastDay);
+	    hash += other.hash;
+	}
+
+	DataSummary toSummary()
+	{
+	    return count == 0 ? EMPTY : new DataSummary(count, sum, min, max, firstDay, lastDay, fingerprint(hash, count));
+	}
+
+	private static long fingerprint(long hash, int count)
+	{
+	    return mix(hash + mix(count));
+	}
+
+	/**
+	 * The finalizer of SplitMix64, which spreads every bit of the input
+	 * over the output
+	 */
+	private static long mix(long value)
+	{
+	    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+	    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+	    return value ^ (value >>> 31);
+	}
+    }
+
+    @Override
+    public String toString()
+    {
+	if (isEmpty()) return "[DataSummary: empty]";
+	return "[DataSummary: " + count + " values from " + getFirstDate() + " to " + getLastDate() + ", " + min + " to " + max + ", mean " + getMean() + "]";
+    }
+}
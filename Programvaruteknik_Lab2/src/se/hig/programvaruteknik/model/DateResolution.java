@@ -0,0 +1,163 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Locale;
+
+/**
+ * How to group data by date<br>
+ * <br>
+ * Every date belongs to exactly one bucket, found by arithmetic on its
+ * {@link LocalDate#toEpochDay() epoch day}<br>
+ * Buckets must be numbered in date order, so a later bucket always have a
+ * higher number
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ * @see Resolution
+ */
+public interface DateResolution
+{
+    /**
+     * Group into meteorological seasons: December to February, March to
+     * May, June to August and September to November<br>
+     * <br>
+     * The key of a season is the first month of it, as in "2015-12"
+     */
+    public final static DateResolution SEASON = months(3, Month.DECEMBER);
+
+    /**
+     * Converts an epoch day to the number of the bucket it belongs to
+     * 
+     * @param epochDay
+     *            The {@link LocalDate#toEpochDay() epoch day}
+     * @return The bucket
+     */
+    public long toBucket(long epochDay);
+
+    /**
+     * Gets the first epoch day of a bucket
+     * 
+     * @param bucket
+     *            The bucket
+     * @return The {@link LocalDate#toEpochDay() epoch day}
+     */
+    public long bucketStart(long bucket);
+
+    /**
+     * Gets the key of a bucket
+     * 
+     * @param bucket
+     *            The bucket
+     * @return The key
+     */
+    public String bucketKey(long bucket);
+
+    /**
+     * Converts a {@link LocalDate} to the number of the bucket it belongs to
+     * 
+     * @param date
+     *            The {@link LocalDate} to convert
+     * @return The bucket
+     * @see DateResolution#toBucket(long)
+     */
+    public default long toBucket(LocalDate date)
+    {
+	return toBucket(date.toEpochDay());
+    }
+
+    /**
+     * Converts a {@link LocalDate} to the key of the bucket it belongs to
+     * 
+     * @param date
+     *            The {@link LocalDate} to convert
+     * @return The key
+     */
+    public default String toKey(LocalDate date)
+    {
+	return bucketKey(toBucket(date));
+    }
+
+    /**
+     * Gets the first date of the group that a {@link LocalDate} belongs to
+     * 
+     * @param date
+     *            The {@link LocalDate}
+     * @return The first date of the group
+     */
+    public default LocalDate startOf(LocalDate date)
+    {
+	return LocalDate.ofEpochDay(bucketStart(toBucket(date)));
+    }
+
+    /**
+     * Groups into spans of days, counted from 1970-01-01<br>
+     * <br>
+     * The key of a span is its first date, as in "2016-02-01"
+     * 
+     * @param days
+     *            The number of days in each span
+     * @return The resolution
+     */
+    public static DateResolution days(int days)
+    {
+	return days(days, LocalDate.ofEpochDay(0));
+    }
+
+    /**
+     * Groups into spans of days, counted from a date<br>
+     * <br>
+     * The key of a span is its first date, as in "2016-02-01"
+     * 
+     * @param days
+     *            The number of days in each span
+     * @param origin
+     *            The first date of a span, the spans before and after it
+     *            follows from it
+     * @return The resolution
+     * @throws IllegalArgumentException
+     *             If the number of days is less than 1
+     */
+    public static DateResolution days(int days, LocalDate origin)
+    {
+	if (days < 1) throw new IllegalArgumentException("Too few days: " + days);
+
+	// Counted from the first span after 1970-01-01, so resolutions with
+	// the same name number their buckets the same
+	long start = Math.floorMod(origin.toEpochDay(), days);
+	return new CustomResolution(
+		days + " days from " + LocalDate.ofEpochDay(start),
+		(day) -> Math.floorDiv(day - start, days),
+		(bucket) -> start + bucket * days,
+		(bucket) -> LocalDate.ofEpochDay(start + bucket * days).toString());
+    }
+
+    /**
+     * Groups into spans of months, such as seasons or football seasons<br>
+     * <br>
+     * The key of a span is its first month, as in "2016-08"
+     * 
+     * @param months
+     *            The number of months in each span, which must evenly divide
+     *            a year
+     * @param firstMonth
+     *            A month that starts a span
+     * @return The resolution
+     * @throws IllegalArgumentException
+     *             If the number of months doesn't evenly divide a year
+     */
+    public static DateResolution months(int months, Month firstMonth)
+    {
+	if (months < 1 || 12 % months != 0) throw new IllegalArgumentException("Months must divide a year: " + months);
+
+	int offset = Math.floorMod(firstMonth.getValue() - 1, months);
+	return new CustomResolution(
+		months + " months from " + Month.of(offset + 1),
+		(day) -> Math.floorDiv(Resolution.toMonth(day) - offset, months),
+		(bucket) -> Resolution.fromMonth(bucket * months + offset),
+		(bucket) ->
+		{
+		    long month = bucket * months + offset;
+		    return String.format(Locale.ROOT, "%04d-%02d", Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+		});
+    }
+}
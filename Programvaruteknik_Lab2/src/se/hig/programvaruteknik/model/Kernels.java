@@ -0,0 +1,243 @@
+package se.hig.programvaruteknik.model;
+
+/**
+ * Reductions over slices of double arrays<br>
+ * <br>
+ * The loops are unrolled into four independent lanes, so the additions of
+ * one lane doesn't have to wait for the previous one and the JIT can keep
+ * the lanes in separate registers or vectorize them. Sums are compensated
+ * per lane, as in {@link MergeType#SUM}
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class Kernels
+{
+    private static final int LANES = 4;
+
+    private Kernels()
+    {
+
+    }
+
+    private static void checkSlice(double[] values, int from, int to)
+    {
+	if (from < 0 || to > values.length || from > to)
+	    throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") of " + values.length);
+    }
+
+    /**
+     * Sums a slice with compensated summation
+     * 
+     * @param values
+     *            The values
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @return The sum, or 0 if the slice is empty
+     */
+    public static double sum(double[] values, int from, int to)
+    {
+	checkSlice(values, from, to);
+
+	double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+	double error0 = 0, error1 = 0, error2 = 0, error3 = 0;
+	double simpleSum = 0;
+
+	int i = from;
+	for (; i + LANES <= to; i += LANES)
+	{
+	    double value0 = values[i];
+	    double value1 = values[i + 1];
+	    double value2 = values[i + 2];
+	    double value3 = values[i + 3];
+
+	    double total0 = sum0 + value0;
+	    error0 += Math.abs(sum0) >= Math.abs(value0) ? (sum0 - total0) + value0 : (value0 - total0) + sum0;
+	    sum0 = total0;
+	    double total1 = sum1 + value1;
+	    error1 += Math.abs(sum1) >= Math.abs(value1) ? (sum1 - total1) + value1 : (value1 - total1) + sum1;
+	    sum1 = total1;
+	    double total2 = sum2 + value2;
+	    error2 += Math.abs(sum2) >= Math.abs(value2) ? (sum2 - total2) + value2 : (value2 - total2) + sum2;
+	    sum2 = total2;
+	    double total3 = sum3 + value3;
+	    error3 += Math.abs(sum3) >= Math.abs(value3) ? (sum3 - total3) + value3 : (value3 - total3) + sum3;
+	    sum3 = total3;
+
+	    simpleSum += (value0 + value1) + (value2 + value3);
+	}
+	for (; i < to; i++)
+	{
+	    double value = values[i];
+	    double total = sum0 + value;
+	    error0 += Math.abs(sum0) >= Math.abs(value) ? (sum0 - total) + value : (value - total) + sum0;
+	    sum0 = total;
+	    simpleSum += value;
+	}
+
+	return total(sum0 + sum1 + sum2 + sum3, error0 + error1 + error2 + error3, simpleSum);
+    }
+
+    /**
+     * Sums the squared distances of a slice from a center, with compensated
+     * summation<br>
+     * <br>
+     * With a center of 0 this is the sum of squares
+     * 
+     * @param values
+     *            The values
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @param center
+     *            The value to take the distances from
+     * @return The sum of squares, or 0 if the slice is empty
+     */
+    public static double sumOfSquares(double[] values, int from, int to, double center)
+    {
+	checkSlice(values, from, to);
+
+	double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+	double error0 = 0, error1 = 0, error2 = 0, error3 = 0;
+	double simpleSum = 0;
+
+	int i = from;
+	for (; i + LANES <= to; i += LANES)
+	{
+	    double value0 = (values[i] - center) * (values[i] - center);
+	    double value1 = (values[i + 1] - center) * (values[i + 1] - center);
+	    double value2 = (values[i + 2] - center) * (values[i + 2] - center);
+	    double value3 = (values[i + 3] - center) * (values[i + 3] - center);
+
+	    double total0 = sum0 + value0;
+	    error0 += Math.abs(sum0) >= Math.abs(value0) ? (sum0 - total0) + value0 : (value0 - total0) + sum0;
+	    sum0 = total0;
+	    double total1 = sum1 + value1;
+	    error1 += Math.abs(sum1) >= Math.abs(value1) ? (sum1 - total1) + value1 : (value1 - total1) + sum1;
+	    sum1 = total1;
+	    double total2 = sum2 + value2;
+	    error2 += Math.abs(sum2) >= Math.abs(value2) ? (sum2 - total2) + value2 : (value2 - total2) + sum2;
+	    sum2 = total2;
+	    double total3 = sum3 + value3;
+	    error3 += Math.abs(sum3) >= Math.abs(value3) ? (sum3 - total3) + value3 : (value3 - total3) + sum3;
+	    sum3 = total3;
+
+	    simpleSum += (value0 + value1) + (value2 + value3);
+	}
+	for (; i < to; i++)
+	{
+	    double value = (values[i] - center) * (values[i] - center);
+	    double total = sum0 + value;
+	    error0 += Math.abs(sum0) >= Math.abs(value) ? (sum0 - total) + value : (value - total) + sum0;
+	    sum0 = total;
+	    simpleSum += value;
+	}
+
+	return total(sum0 + sum1 + sum2 + sum3, error0 + error1 + error2 + error3, simpleSum);
+    }
+
+    private static double total(double sum, double error, double simpleSum)
+    {
+	double total = sum + error;
+	// Infinite values makes the compensation NaN
+	if (Double.isNaN(total) && Double.isInfinite(simpleSum)) return simpleSum;
+	return total;
+    }
+
+    /**
+     * Finds the smallest value of a slice
+     * 
+     * @param values
+     *            The values
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @return The smallest value, or positive infinity if the slice is empty
+     */
+    public static double min(double[] values, int from, int to)
+    {
+	checkSlice(values, from, to);
+
+	double min0 = Double.POSITIVE_INFINITY, min1 = min0, min2 = min0, min3 = min0;
+	int i = from;
+	for (; i + LANES <= to; i += LANES)
+	{
+	    min0 = Math.min(min0, values[i]);
+	    min1 = Math.min(min1, values[i + 1]);
+	    min2 = Math.min(min2, values[i + 2]);
+	    min3 = Math.min(min3, values[i + 3]);
+	}
+	for (; i < to; i++)
+	    min0 = Math.min(min0, values[i]);
+
+	return Math.min(Math.min(min0, min1), Math.min(min2, min3));
+    }
+
+    /**
+     * Finds the largest value of a slice
+     * 
+     * @param values
+     *            The values
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @return The largest value, or negative infinity if the slice is empty
+     */
+    public static double max(double[] values, int from, int to)
+    {
+	checkSlice(values, from, to);
+
+	double max0 = Double.NEGATIVE_INFINITY, max1 = max0, max2 = max0, max3 = max0;
+	int i = from;
+	for (; i + LANES <= to; i += LANES)
+	{
+	    max0 = Math.max(max0, values[i]);
+	    max1 = Math.max(max1, values[i + 1]);
+	    max2 = Math.max(max2, values[i + 2]);
+	    max3 = Math.max(max3, values[i + 3]);
+	}
+	for (; i < to; i++)
+	    max0 = Math.max(max0, values[i]);
+
+	return Math.max(Math.max(max0, max1), Math.max(max2, max3));
+    }
+
+    /**
+     * Takes the dot product of two slices of the same length
+     * 
+     * @param x
+     *            The first values
+     * @param xFrom
+     *            The index of the first value in x
+     * @param y
+     *            The second values
+     * @param yFrom
+     *            The index of the first value in y
+     * @param length
+     *            The number of values to multiply
+     * @return The dot product, or 0 if the length is 0
+     */
+    public static double dot(double[] x, int xFrom, double[] y, int yFrom, int length)
+    {
+	checkSlice(x, xFrom, xFrom + length);
+	checkSlice(y, yFrom, yFrom + length);
+
+	double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+	int i = 0;
+	for (; i + LANES <= length; i += LANES)
+	{
+	    sum0 += x[xFrom + i] * y[yFrom + i];
+	    sum1 += x[xFrom + i + 1] * y[yFrom + i + 1];
+	    sum2 += x[xFrom + i + 2] * y[yFrom + i + 2];
+	    sum3 += x[xFrom + i + 3] * y[yFrom + i + 3];
+	}
+	for (; i < length; i++)
+	    sum0 += x[xFrom + i] * y[yFrom + i];
+
+	return (sum0 + sum1) + (sum2 + sum3);
+    }
+}
@@ -0,0 +1,237 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import se.hig.programvaruteknik.model.DataCollectionBuilder.MatchMode;
+
+/**
+ * A size bounded cache of matched data, that can be shared between
+ * {@link DataCollectionBuilder}s<br>
+ * <br>
+ * The results are keyed on the {@link DataSource#getFingerprint()
+ * fingerprints} of the sources together with the merge types, the
+ * resolution or window and the match mode, so sources with the same data
+ * share their results. Sources that keep their fingerprint, as built
+ * sources do, must not change their data after they have been matched<br>
+ * When the cache is full, the least recently used result is evicted<br>
+ * <br>
+ * The cached results are unmodifiable
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class MatchResultCache
+{
+    /**
+     * The number of results the {@link MatchResultCache#getShared() shared
+     * cache} can hold
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final MatchResultCache shared = new MatchResultCache(DEFAULT_CAPACITY);
+
+    private int capacity;
+    private long hits = 0;
+    private long misses = 0;
+
+    @SuppressWarnings("serial")
+    private final LinkedHashMap<Key, Map<String, MatchedDataPair>> results = new LinkedHashMap<Key, Map<String, MatchedDataPair>>(16, 0.75f, true)
+    {
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<Key, Map<String, MatchedDataPair>> eldest)
+	{
+	    return size() > capacity;
+	}
+    };
+
+    /**
+     * Creates a cache
+     * 
+     * @param capacity
+     *            The number of results the cache can hold
+     */
+    public MatchResultCache(int capacity)
+    {
+	setCapacity(capacity);
+    }
+
+    /**
+     * Get the cache that {@link DataCollectionBuilder}s can share by
+     * {@link DataCollectionBuilder#setMatchCache(MatchResultCache) opting in}
+     * 
+     * @return The shared cache
+     */
+    public static MatchResultCache getShared()
+    {
+	return shared;
+    }
+
+    /**
+     * Sets the number of results the cache can hold<br>
+     * <br>
+     * If the cache holds more results than that, the least recently used
+     * ones are evicted
+     * 
+     * @param capacity
+     *            The new capacity
+     * @throws IllegalArgumentException
+     *             If the capacity is negative
+     */
+    public synchronized void setCapacity(int capacity)
+    {
+	if (capacity < 0) throw new IllegalArgumentException("Negative capacity: " + capacity);
+
+	this.capacity = capacity;
+	while (results.size() > capacity)
+	    results.remove(results.keySet().iterator().next());
+    }
+
+    /**
+     * Get the number of results the cache can hold
+     * 
+     * @return The capacity
+     */
+    public synchronized int getCapacity()
+    {
+	return capacity;
+    }
+
+    /**
+     * Get the number of results in the cache
+     * 
+     * @return The number of results
+     */
+    public synchronized int size()
+    {
+	return results.size();
+    }
+
+    /**
+     * Get the number of times a result was found in the cache
+     * 
+     * @return The number of hits
+     */
+    public synchronized long getHitCount()
+    {
+	return hits;
+    }
+
+    /**
+     * Get the number of times a result had to be matched
+     * 
+     * @return The number of misses
+     */
+    public synchronized long getMissCount()
+    {
+	return misses;
+    }
+
+    /**
+     * Removes all results and resets the counters
+     */
+    public synchronized void clear()
+    {
+	results.clear();
+	hits = 0;
+	misses = 0;
+    }
+
+    /**
+     * Gets a cached result or matches and caches it<br>
+     * <br>
+     * The matching is done without holding the lock of the cache, so two
+     * threads that miss on the same key at the same time may both match it
+     * 
+     * @param key
+     *            The key of the result
+     * @param matcher
+     *            Matches the result if it is not cached
+     * @return The unmodifiable result
+     */
+    Map<String, MatchedDataPair> get(Key key, Supplier<Map<String, MatchedDataPair>> matcher)
+    {
+	synchronized (this)
+	{
+	    Map<String, MatchedDataPair> result = results.get(key);
+	    if (result != null)
+	    {
+		hits++;
+		return result;
+	    }
+	    misses++;
+	}
+
+	return put(key, matcher.get());
+    }
+
+    /**
+     * Caches a result
+     * 
+     * @param key
+     *            The key of the result
+     * @param result
+     *            The result
+     * @return The unmodifiable result
+     */
+    Map<String, MatchedDataPair> put(Key key, Map<String, MatchedDataPair> result)
+    {
+	Map<String, MatchedDataPair> unmodifiable = Collections.unmodifiableMap(result);
+	synchronized (this)
+	{
+	    results.put(key, unmodifiable);
+	}
+	return unmodifiable;
+    }
+
+    /**
+     * The key of a result
+     */
+    static class Key
+    {
+	private final long xFingerprint;
+	private final MergeType xMergeType;
+	private final long yFingerprint;
+	private final MergeType yMergeType;
+	private final Object grouping;
+	private final MatchMode matchMode;
+
+	Key(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType, Object grouping, MatchMode matchMode)
+	{
+	    this.xFingerprint = xSource.getFingerprint();
+	    this.xMergeType = xMergeType;
+	    this.yFingerprint = ySource.getFingerprint();
+	    this.yMergeType = yMergeType;
+	    this.grouping = grouping;
+	    this.matchMode = matchMode;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+	    if (!(object instanceof Key)) return false;
+
+	    Key other = (Key) object;
+	    return xFingerprint == other.xFingerprint
+		    && yFingerprint == other.yFingerprint
+		    && xMergeType == other.xMergeType
+		    && yMergeType == other.yMergeType
+		    && grouping.equals(other.grouping)
+		    && matchMode == other.matchMode;
+	}
+
+	@Override
+	public int hashCode()
+	{
+	    return Objects.hash(
+		    xFingerprint,
+		    yFingerprint,
+		    System.identityHashCode(xMergeType),
+		    System.identityHashCode(yMergeType),
+		    grouping,
+		    matchMode);
+	}
+    }
+}
@@ -0,0 +1,52 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.Arrays;
+
+/**
+ * A class representing any number of data values that makes a row
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class MatchedDataRow
+{
+    private final Double[] values;
+
+    /**
+     * Creates a row
+     * 
+     * @param values
+     *            The values, one for each source
+     */
+    public MatchedDataRow(Double... values)
+    {
+	this.values = values.clone();
+    }
+
+    /**
+     * Get the number of values
+     * 
+     * @return The number of values
+     */
+    public int size()
+    {
+	return values.length;
+    }
+
+    /**
+     * Get a value
+     * 
+     * @param index
+     *            The index of the source of the value
+     * @return The value
+     */
+    public Double getValue(int index)
+    {
+	return values[index];
+    }
+
+    @Override
+    public String toString()
+    {
+	return Arrays.toString(values);
+    }
+}
@@ -2,10 +2,13 @@ package se.hig.programvaruteknik.model;
 
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /**
- * Lambda that defines how to merge {@link MatchedDataPair MatchedDataPairs}
+ * Lambda that defines how to merge {@link MatchedDataPair MatchedDataPairs}<br>
+ * <br>
+ * Values can also be merged one at a time with an {@link Accumulator}, which
+ * lets them be folded into a bucket as they are visited
  * 
  * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
  */
@@ -15,28 +18,63 @@ public interface MergeType
     /**
      * Sum all values
      */
-    public final static MergeType SUM = (list) ->
-    {
-	return list.stream().collect(Collectors.summarizingDouble((value) -> value)).getSum();
-    };
+    public final static MergeType SUM = of(Accumulators.Sum::new);
 
     /**
      * Take the average of all values
      */
-    public final static MergeType AVERAGE = (list) ->
-    {
-	return list.stream().collect(Collectors.summarizingDouble((value) -> value)).getAverage();
-    };
+    public final static MergeType AVERAGE = of(Accumulators.Average::new);
 
     /**
-     * Take the median of the values
+     * Take the median of the values<br>
+     * <br>
+     * If there is an even number of values, the average of the two middle
+     * values is taken
      */
-    public final static MergeType MEDIAN = (list) ->
-    {
-	if (list.size() == 0) return 0d;
+    public final static MergeType MEDIAN = of(Accumulators.Median::new);
+
+    /**
+     * Take the smallest value
+     */
+    public final static MergeType MIN = of(Accumulators.Min::new);
+
+    /**
+     * Take the largest value
+     */
+    public final static MergeType MAX = of(Accumulators.Max::new);
+
+    /**
+     * Count the values
+     */
+    public final static MergeType COUNT = of(Accumulators.Count::new);
+
+    /**
+     * Take the population standard deviation of the values
+     */
+    public final static MergeType STANDARD_DEVIATION = of(() -> new Accumulators.Deviation(false));
 
-	return list.get((int) Math.floor(list.size() / 2));
-    };
+    /**
+     * Take the sample standard deviation of the values
+     */
+    public final static MergeType SAMPLE_STANDARD_DEVIATION = of(() -> new Accumulators.Deviation(true));
+
+    /**
+     * Estimate the median of the values, see
+     * {@link MergeType#quantile(double)}
+     */
+    public final static MergeType P50 = quantile(0.5);
+
+    /**
+     * Estimate the 90th percentile of the values, see
+     * {@link MergeType#quantile(double)}
+     */
+    public final static MergeType P90 = quantile(0.9);
+
+    /**
+     * Estimate the 99th percentile of the values, see
+     * {@link MergeType#quantile(double)}
+     */
+    public final static MergeType P99 = quantile(0.99);
 
     /**
      * Merges {@link MatchedDataPair MatchedDataPairs}
@@ -50,4 +88,156 @@ public interface MergeType
      * @return merged {@link MatchedDataPair}
      */
     public Double merge(List<Double> data);
+
+    /**
+     * Merges a slice of an array of values, without boxing them<br>
+     * <br>
+     * Defaults to adding the values to a new {@link Accumulator}
+     * 
+     * @param values
+     *            The values, which are left unchanged
+     * @param from
+     *            The index of the first value, inclusive
+     * @param to
+     *            The index of the last value, exclusive
+     * @return The merged value
+     */
+    public default Double merge(double[] values, int from, int to)
+    {
+	Accumulator accumulator = createAccumulator();
+	accumulator.acceptAll(values, from, to);
+	return accumulator.finish();
+    }
+
+    /**
+     * Creates an {@link Accumulator} that merges values the same way as
+     * {@link MergeType#merge(List)}<br>
+     * <br>
+     * Defaults to collecting the values in a list and merging them when
+     * {@link Accumulator#finish() finished}
+     * 
+     * @return A new, empty {@link Accumulator}
+     */
+    public default Accumulator createAccumulator()
+    {
+	return new Accumulators.Buffered(this);
+    }
+
+    /**
+     * Creates a merge type that estimates a quantile of the values with a
+     * streaming sketch of the default accuracy<br>
+     * <br>
+     * See {@link MergeType#quantile(double, int)}
+     * 
+     * @param quantile
+     *            The quantile, from 0 to 1
+     * @return The merge type
+     */
+    public static MergeType quantile(double quantile)
+    {
+	return quantile(quantile, QuantileSketch.DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Creates a merge type that estimates a quantile of the values with a
+     * streaming sketch<br>
+     * <br>
+     * Each bucket keeps about three times the accuracy in values, no matter
+     * how many values it gets, and the rank of the estimate is off by a
+     * fraction of the values that shrinks in proportion to 1 / accuracy
+     * (about 1% at an accuracy of 200)<br>
+     * The sketches combine without losing accuracy, so the merge type works
+     * with every {@link DataCollectionBuilder.MatchMode}
+     * 
+     * @param quantile
+     *            The quantile, from 0 to 1
+     * @param accuracy
+     *            The number of values kept at the top level of the sketch, at
+     *            least 2
+     * @return The merge type
+     * @throws IllegalArgumentException
+     *             If the quantile or accuracy is out of range
+     */
+    public static MergeType quantile(double quantile, int accuracy)
+    {
+	if (!(quantile >= 0 && quantile <= 1)) throw new IllegalArgumentException("Quantile out of range: " + quantile);
+	if (accuracy < 2) throw new IllegalArgumentException("Accuracy too low: " + accuracy);
+
+	return of(() -> new QuantileSketch(quantile, accuracy));
+    }
+
+    /**
+     * Creates a merge type from a supplier of {@link Accumulator Accumulators}
+     * 
+     * @param factory
+     *            Creates new, empty {@link Accumulator Accumulators}
+     * @return The merge type
+     */
+    public static MergeType of(Supplier<Accumulator> factory)
+    {
+	return new MergeType()
+	{
+	    @Override
+	    public Double merge(List<Double> data)
+	    {
+		Accumulator accumulator = factory.get();
+		for (Double value : data)
+		    accumulator.accept(value);
+		return accumulator.finish();
+	    }
+
+	    @Override
+	    public Accumulator createAccumulator()
+	    {
+		return factory.get();
+	    }
+	};
+    }
+
+    /**
+     * Merges values one at a time
+     */
+    public interface Accumulator
+    {
+	/**
+	 * Adds a value
+	 * 
+	 * @param value
+	 *            The value
+	 */
+	public void accept(double value);
+
+	/**
+	 * Adds a slice of an array of values
+	 * 
+	 * @param values
+	 *            The values, which are left unchanged
+	 * @param from
+	 *            The index of the first value, inclusive
+	 * @param to
+	 *            The index of the last value, exclusive
+	 */
+	public default void acceptAll(double[] values, int from, int to)
+	{
+	    for (int i = from; i < to; i++)
+		accept(values[i]);
+	}
+
+	/**
+	 * Adds all values of another accumulator, which is left unchanged<br>
+	 * <br>
+	 * The other accumulator must be created by the same {@link MergeType}
+	 * 
+	 * @param other
+	 *            The other accumulator
+	 */
+	public void combine(Accumulator other);
+
+	/**
+	 * Gives the merged value of the added values
+	 * 
+	 * @return The merged value
+	 */
+	public Double finish();
+    }
 }
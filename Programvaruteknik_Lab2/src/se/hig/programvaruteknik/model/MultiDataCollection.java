@@ -0,0 +1,204 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.owlike.genson.Genson;
+
+import se.hig.programvaruteknik.JSONFormatter;
+
+/**
+ * A collection of data from any number of sources
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class MultiDataCollection
+{
+    private final Map<String, MatchedDataRow> data;
+    private String title;
+
+    private List<String> units = new ArrayList<>();
+    private List<String> sourceNames = new ArrayList<>();
+    private List<String> sourceLinks = new ArrayList<>();
+
+    /**
+     * Populates a collection of data<br>
+     * <br>
+     * The data is not copied, so it must not be changed after the collection
+     * is created
+     * 
+     * @param title
+     *            The title for this collection
+     * @param sources
+     *            The data-sources, in the same order as the values of the
+     *            rows
+     * @param data
+     *            The data to put in this collection
+     */
+    public MultiDataCollection(String title, List<DataSource> sources, Map<String, MatchedDataRow> data)
+    {
+	this.data = Collections.unmodifiableMap(data);
+	this.title = title;
+
+	for (DataSource source : sources)
+	{
+	    units.add(source.getUnit());
+	    sourceNames.add(source.getSourceName());
+	    sourceLinks.add(source.getSourceLink());
+	}
+    }
+
+    /**
+     * The title
+     * 
+     * @return The title
+     */
+    public String getTitle()
+    {
+	return title;
+    }
+
+    /**
+     * Get the number of sources
+     * 
+     * @return The number of sources
+     */
+    public int getSourceCount()
+    {
+	return units.size();
+    }
+
+    /**
+     * Get the units of the sources
+     * 
+     * @return The units, in the same order as the values of the rows
+     */
+    public List<String> getUnits()
+    {
+	return Collections.unmodifiableList(units);
+    }
+
+    /**
+     * Get the names of the sources of the sources
+     * 
+     * @return The names or nulls, in the same order as the values of the rows
+     */
+    public List<String> getSourceNames()
+    {
+	return Collections.unmodifiableList(sourceNames);
+    }
+
+    /**
+     * Get the links of the sources of the sources
+     * 
+     * @return The links or nulls, in the same order as the values of the rows
+     */
+    public List<String> getSourceLinks()
+    {
+	return Collections.unmodifiableList(sourceLinks);
+    }
+
+    /**
+     * Get the data in this collection
+     * 
+     * @return A read-only view of the data in this collection
+     */
+    public Map<String, MatchedDataRow> getData()
+    {
+	return data;
+    }
+
+    /**
+     * Get the name that a source have in the JSON representation<br>
+     * <br>
+     * The sources are named a, b, ..., z, aa, ab, ...
+     * 
+     * @param index
+     *            The index of the source
+     * @return The name
+     */
+    public static String getColumnName(int index)
+    {
+	StringBuilder name = new StringBuilder();
+	for (int i = index + 1; i > 0; i = (i - 1) / 26)
+	    name.insert(0, (char) ('a' + (i - 1) % 26));
+	return name.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+	return "[MultiDataCollection: " + title + "]";
+    }
+
+    /**
+     * Returns a JSON representation of this collection
+     * 
+     * @return The JSON string
+     */
+    public String asJSON()
+    {
+	return asJSON(new JSONFormatter());
+    }
+
+    /**
+     * Returns a JSON representation of this collection<br>
+     * <br>
+     * Follows the layout of {@link DataCollection#asJSON(JSONFormatter)},
+     * with a set of fields for each source named as in
+     * {@link MultiDataCollection#getColumnName(int)}
+     * 
+     * @param formatter
+     *            A formatter to format the JSON string with<br>
+     *            If null, it is not formatted
+     * 
+     * @return The JSON string
+     */
+    @SuppressWarnings("serial")
+    public String asJSON(JSONFormatter formatter)
+    {
+	if (formatter == null) formatter = new JSONFormatter()
+	{
+	    @Override
+	    public String format(String JSON)
+	    {
+		return JSON;
+	    }
+	};
+
+	return formatter.format(new Genson().serialize(new TreeMap<String, Object>()
+	{
+	    {
+		put("data", new TreeMap<String, Object>()
+		{
+		    {
+			put("name", getTitle());
+			for (int i = 0; i < getSourceCount(); i++)
+			{
+			    put(getColumnName(i) + "_name", units.get(i));
+			    put(getColumnName(i) + "_source_name", sourceNames.get(i));
+			    put(getColumnName(i) + "_source_link", sourceLinks.get(i));
+			}
+			put("data", new TreeMap<String, Object>()
+			{
+			    {
+				for (Entry<String, MatchedDataRow> entry : getData().entrySet())
+				    put(entry.getKey(), new TreeMap<String, Object>()
+				    {
+					{
+					    for (int i = 0; i < entry.getValue().size(); i++)
+						put(getColumnName(i), entry.getValue().getValue(i));
+					}
+				    });
+			    }
+			});
+		    }
+		});
+	    }
+	}));
+    }
+}
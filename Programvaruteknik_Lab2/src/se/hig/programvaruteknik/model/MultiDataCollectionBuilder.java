@@ -0,0 +1,178 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * A builder for {@link MultiDataCollection}s, that matches any number of
+ * {@link DataSource}s at once<br>
+ * <br>
+ * Only buckets that all sources have data in are kept<br>
+ * Each source is scanned once, no matter the number of sources
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class MultiDataCollectionBuilder
+{
+    private String title = null;
+    private List<DataSource> sources = new ArrayList<>();
+    private List<MergeType> mergeTypes = new ArrayList<>();
+    private DateResolution resolution;
+
+    private CachedValue<Map<String, MatchedDataRow>> resultingData = new CachedValue<>(
+	    () -> matchData(sources, mergeTypes, resolution));
+
+    /**
+     * Creation of a builder that builds a {@link MultiDataCollection}<br>
+     * <br>
+     * Requires:
+     * <ul>
+     * <li>{@link MultiDataCollectionBuilder#addDatasource(DataSource, MergeType)
+     * Datasources}
+     * </li>
+     * <li>{@link MultiDataCollectionBuilder#setResolution(DateResolution)
+     * Resolution}
+     * </li>
+     * </ul>
+     * Optional:
+     * <ul>
+     * <li>{@link MultiDataCollectionBuilder#setTitle(String) Title}
+     * </li>
+     * </ul>
+     */
+    public MultiDataCollectionBuilder()
+    {
+
+    }
+
+    /**
+     * Creation of a builder that builds a {@link MultiDataCollection}
+     * 
+     * @param resolution
+     *            The resolution
+     */
+    public MultiDataCollectionBuilder(DateResolution resolution)
+    {
+	setResolution(resolution);
+    }
+
+    /**
+     * Adds a datasource, merged with {@link MergeType#SUM}
+     * 
+     * @param source
+     *            The datasource
+     * @return This builder (for chaining)
+     */
+    public MultiDataCollectionBuilder addDatasource(DataSource source)
+    {
+	return addDatasource(source, MergeType.SUM);
+    }
+
+    /**
+     * Adds a datasource
+     * 
+     * @param source
+     *            The datasource
+     * @param mergeType
+     *            How to merge the values of the datasource
+     * @return This builder (for chaining)
+     */
+    public MultiDataCollectionBuilder addDatasource(DataSource source, MergeType mergeType)
+    {
+	sources.add(source);
+	mergeTypes.add(mergeType);
+	resultingData.clearCache();
+	return this;
+    }
+
+    /**
+     * Sets the title
+     * 
+     * @param title
+     *            The new title
+     * @return This builder (for chaining)
+     */
+    public MultiDataCollectionBuilder setTitle(String title)
+    {
+	this.title = title;
+	return this;
+    }
+
+    /**
+     * Gets the title
+     * 
+     * @return The title
+     */
+    public String getTitle()
+    {
+	return title == null ? sources.stream().map(DataSource::getName).collect(Collectors.joining(" : ")) : title;
+    }
+
+    /**
+     * Sets the resolution
+     * 
+     * @param resolution
+     *            The new resolution
+     * @return This builder (for chaining)
+     */
+    public MultiDataCollectionBuilder setResolution(DateResolution resolution)
+    {
+	this.resolution = resolution;
+	resultingData.clearCache();
+	return this;
+    }
+
+    static Map<String, MatchedDataRow> matchData(List<DataSource> sources, List<MergeType> mergeTypes, DateResolution resolution)
+    {
+	Map<String, MatchedDataRow> matches = new LinkedHashMap<>();
+	if (sources.isEmpty()) return matches;
+
+	List<Map<Long, Accumulator>> groups = new ArrayList<>();
+	for (int i = 0; i < sources.size(); i++)
+	    groups.add(DataCollectionBuilder.groupData(sources.get(i), mergeTypes.get(i), resolution));
+
+	// Only the buckets of the smallest group can be in all groups
+	Map<Long, Accumulator> smallest = Collections.min(groups, (a, b) -> Integer.compare(a.size(), b.size()));
+	long[] buckets = new long[smallest.size()];
+	int count = 0;
+	for (Long bucket : smallest.keySet())
+	{
+	    boolean inAll = true;
+	    for (Map<Long, Accumulator> group : groups)
+		if (!group.containsKey(bucket))
+		{
+		    inAll = false;
+		    break;
+		}
+	    if (inAll) buckets[count++] = bucket;
+	}
+	Arrays.sort(buckets, 0, count);
+
+	for (int i = 0; i < count; i++)
+	{
+	    Double[] values = new Double[groups.size()];
+	    for (int j = 0; j < values.length; j++)
+		values[j] = groups.get(j).get(buckets[i]).finish();
+	    matches.put(resolution.bucketKey(buckets[i]), new MatchedDataRow(values));
+	}
+
+	return matches;
+    }
+
+    /**
+     * Build the {@link MultiDataCollection}
+     * 
+     * @return the resulting {@link MultiDataCollection}
+     */
+    public MultiDataCollection getResult()
+    {
+	return new MultiDataCollection(getTitle(), sources, resultingData.get());
+    }
+}
@@ -0,0 +1,288 @@
+package se.hig.programvaruteknik.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link DataCollection} that stores its keys and values outside the
+ * heap, in direct buffers<br>
+ * <br>
+ * A collection of millions of matches is then a handful of objects to the
+ * garbage collector instead of millions. {@link DataCollection#getData()}
+ * and {@link DataCollection#asJSON()} work as usual, on a read-only view
+ * that decodes the entries on the fly<br>
+ * <br>
+ * The collection should be {@link OffHeapDataCollection#close() closed}
+ * when it is no longer used, after which any use of the data throws
+ * {@link IllegalStateException}. The buffers themselves are freed by the
+ * garbage collector once the collection can no longer be reached
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class OffHeapDataCollection extends DataCollection implements AutoCloseable
+{
+    private final Storage storage;
+
+    /**
+     * Populates a collection of data, copying the data out of the heap
+     * 
+     * @param title
+     *            The title for this collection
+     * @param sourceX
+     *            The data-source for the x values
+     * @param sourceY
+     *            The data-source for the y values
+     * @param data
+     *            The data to put in this collection
+     */
+    public OffHeapDataCollection(String title, DataSource sourceX, DataSource sourceY, Map<String, MatchedDataPair> data)
+    {
+	this(title, sourceX, sourceY, new Storage(data));
+    }
+
+    private OffHeapDataCollection(String title, DataSource sourceX, DataSource sourceY, Storage storage)
+    {
+	super(title, sourceX, sourceY, storage.new View());
+	this.storage = storage;
+    }
+
+    /**
+     * Closes this collection, so that any further use of its data throws
+     * {@link IllegalStateException}<br>
+     * <br>
+     * Closing a closed collection does nothing
+     */
+    @Override
+    public void close()
+    {
+	storage.close();
+    }
+
+    /**
+     * Get whether this collection is closed
+     * 
+     * @return True if it is closed
+     */
+    public boolean isClosed()
+    {
+	return storage.closed;
+    }
+
+    @Override
+    public String toString()
+    {
+	return "[OffHeapDataCollection: " + getTitle() + (isClosed() ? " (closed)" : "") + "]";
+    }
+
+    /**
+     * The buffers of a collection<br>
+     * <br>
+     * Keys are stored as UTF-8 back to back, with the offset of each key in
+     * a separate buffer. Values are stored as raw bits, with a NaN that is
+     * never produced by arithmetic standing in for null. Lookups go through
+     * an open-addressing table of indices
+     */
+    private static class Storage
+    {
+	private static final long NULL_BITS = 0x7FF8_0000_DEAD_BEEFL;
+
+	private final int size;
+
+	private final ByteBuffer keys;
+	private final IntBuffer offsets;
+	private final IntBuffer hashes;
+	private final LongBuffer values;
+	private final IntBuffer table;
+
+	private volatile boolean closed = false;
+
+	private Storage(Map<String, MatchedDataPair> data)
+	{
+	    size = data.size();
+
+	    byte[][] encodedKeys = new byte[size][];
+	    int keyBytes = 0;
+	    int index = 0;
+	    for (String key : data.keySet())
+	    {
+		encodedKeys[index] = key.getBytes(StandardCharsets.UTF_8);
+		keyBytes += encodedKeys[index].length;
+		index++;
+	    }
+
+	    keys = ByteBuffer.allocateDirect(Math.max(keyBytes, 1));
+	    offsets = allocate(size + 1).asIntBuffer();
+	    hashes = allocate(size).asIntBuffer();
+	    values = ByteBuffer.allocateDirect(Math.max(size * 2 * Long.BYTES, 1)).order(ByteOrder.nativeOrder()).asLongBuffer();
+
+	    int capacity = Integer.highestOneBit(Math.max(size * 2, 2) - 1) << 1;
+	    table = allocate(capacity).asIntBuffer();
+
+	    index = 0;
+	    for (Entry<String, MatchedDataPair> entry : data.entrySet())
+	    {
+		offsets.put(index, keys.position());
+		keys.put(encodedKeys[index]);
+		hashes.put(index, entry.getKey().hashCode());
+		values.put(index * 2, toBits(entry.getValue().getXValue()));
+		values.put(index * 2 + 1, toBits(entry.getValue().getYValue()));
+
+		int slot = slotOf(entry.getKey().hashCode());
+		while (table.get(slot) != 0)
+		    slot = (slot + 1) & (table.capacity() - 1);
+		table.put(slot, index + 1);
+		index++;
+	    }
+	    offsets.put(size, keys.position());
+	}
+
+	private static ByteBuffer allocate(int ints)
+	{
+	    return ByteBuffer.allocateDirect(Math.max(ints, 1) * Integer.BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	private static long toBits(Double value)
+	{
+	    return value == null ? NULL_BITS : Double.doubleToRawLongBits(value);
+	}
+
+	private static Double fromBits(long bits)
+	{
+	    return bits == NULL_BITS ? null : Double.longBitsToDouble(bits);
+	}
+
+	private int slotOf(int hash)
+	{
+	    // Spread the hash, as String hashes of dates differ mostly in the
+	    // low bits
+	    int spread = hash * 0x9E3779B9;
+	    return (spread ^ (spread >>> 16)) & (table.capacity() - 1);
+	}
+
+	private void checkOpen()
+	{
+	    if (closed) throw new IllegalStateException("The collection is closed");
+	}
+
+	private String getKey(int index)
+	{
+	    int from = offsets.get(index);
+	    byte[] bytes = new byte[offsets.get(index + 1) - from];
+	    for (int i = 0; i < bytes.length; i++)
+		bytes[i] = keys.get(from + i);
+	    return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private MatchedDataPair getPair(int index)
+	{
+	    return new MatchedDataPair(fromBits(values.get(index * 2)), fromBits(values.get(index * 2 + 1)));
+	}
+
+	private int indexOf(Object key)
+	{
+	    checkOpen();
+	    if (!(key instanceof String)) return -1;
+
+	    int hash = key.hashCode();
+	    byte[] bytes = null;
+	    for (int slot = slotOf(hash);; slot = (slot + 1) & (table.capacity() - 1))
+	    {
+		int index = table.get(slot) - 1;
+		if (index < 0) return -1;
+		if (hashes.get(index) != hash) continue;
+
+		if (bytes == null) bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+		if (keyEquals(index, bytes)) return index;
+	    }
+	}
+
+	private boolean keyEquals(int index, byte[] bytes)
+	{
+	    int from = offsets.get(index);
+	    if (offsets.get(index + 1) - from != bytes.length) return false;
+	    for (int i = 0; i < bytes.length; i++)
+		if (keys.get(from + i) != bytes[i]) return false;
+	    return true;
+	}
+
+	private void close()
+	{
+	    closed = true;
+	}
+
+	/**
+	 * The read-only view of the data, in the order it was given in
+	 */
+	private class View extends AbstractMap<String, MatchedDataPair>
+	{
+	    @Override
+	    public int size()
+	    {
+		checkOpen();
+		return size;
+	    }
+
+	    @Override
+	    public boolean containsKey(Object key)
+	    {
+		return indexOf(key) >= 0;
+	    }
+
+	    @Override
+	    public MatchedDataPair get(Object key)
+	    {
+		int index = indexOf(key);
+		return index < 0 ? null : getPair(index);
+	    }
+
+	    @Override
+	    public Set<Entry<String, MatchedDataPair>> entrySet()
+	    {
+		return new AbstractSet<Entry<String, MatchedDataPair>>()
+		{
+		    @Override
+		    public int size()
+		    {
+			return View.this.size();
+		    }
+
+		    @Override
+		    public Iterator<Entry<String, MatchedDataPair>> iterator()
+		    {
+			checkOpen();
+			return new Iterator<Entry<String, MatchedDataPair>>()
+			{
+			    private int index = 0;
+
+			    @Override
+			    public boolean hasNext()
+			    {
+				return index < size;
+			    }
+
+			    @Override
+			    public Entry<String, MatchedDataPair> next()
+			    {
+				checkOpen();
+				if (index >= size) throw new NoSuchElementException();
+				Entry<String, MatchedDataPair> entry = new SimpleImmutableEntry<>(getKey(index), getPair(index));
+				index++;
+				return entry;
+			    }
+			};
+		    }
+		};
+	    }
+	}
+    }
+}
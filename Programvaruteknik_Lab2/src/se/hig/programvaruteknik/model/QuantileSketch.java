@@ -0,0 +1,185 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.Arrays;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * Estimates a quantile of the added values with a KLL sketch, using bounded
+ * memory<br>
+ * <br>
+ * Values are kept in a stack of levels, where a value on level h stands for
+ * 2<sup>h</sup> of the added values. When a level is full it is sorted and
+ * every other value, starting at a random one of the first two, is promoted
+ * to the level above. The capacities of the levels shrink by 2/3 for each
+ * level below the top, so about 3k values are kept no matter how many values
+ * are added<br>
+ * <br>
+ * The rank error of the estimate shrinks in proportion to 1/k<br>
+ * Sketches of the same quantile and accuracy can be combined, which gives
+ * the same accuracy as if all values had been added to one sketch
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+class QuantileSketch implements Accumulator
+{
+    /**
+     * The accuracy used when none is given
+     */
+    static final int DEFAULT_ACCURACY = 200;
+
+    private static final double CAPACITY_RATIO = 2d / 3;
+
+    private final double quantile;
+    private final int accuracy;
+
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+    private int retained = 0;
+    private int maxRetained = 0;
+
+    private long random = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Creates an empty sketch
+     * 
+     * @param quantile
+     *            The quantile to estimate, from 0 to 1
+     * @param accuracy
+     *            The capacity k of the top level
+     */
+    QuantileSketch(double quantile, int accuracy)
+    {
+	this.quantile = quantile;
+	this.accuracy = accuracy;
+	grow();
+    }
+
+    private int capacity(int level)
+    {
+	int depth = levels.length - level - 1;
+	return Math.max(2, (int) Math.ceil(accuracy * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void grow()
+    {
+	levels = Arrays.copyOf(levels, levels.length + 1);
+	sizes = Arrays.copyOf(sizes, sizes.length + 1);
+	levels[levels.length - 1] = new double[8];
+
+	maxRetained = 0;
+	for (int level = 0; level < levels.length; level++)
+	    maxRetained += capacity(level);
+    }
+
+    private void ensureCapacity(int level, int length)
+    {
+	if (sizes[level] + length > levels[level].length)
+	    levels[level] = Arrays.copyOf(levels[level], Math.max(sizes[level] + length, levels[level].length * 2));
+    }
+
+    @Override
+    public void accept(double value)
+    {
+	ensureCapacity(0, 1);
+	levels[0][sizes[0]++] = value;
+	retained++;
+
+	if (retained >= maxRetained) compress();
+    }
+
+    @Override
+    public void combine(Accumulator other)
+    {
+	QuantileSketch others = (QuantileSketch) other;
+	while (levels.length < others.levels.length)
+	    grow();
+	for (int level = 0; level < others.levels.length; level++)
+	{
+	    ensureCapacity(level, others.sizes[level]);
+	    System.arraycopy(others.levels[level], 0, levels[level], sizes[level], others.sizes[level]);
+	    sizes[level] += others.sizes[level];
+	    retained += others.sizes[level];
+	}
+
+	while (retained >= maxRetained)
+	    compress();
+    }
+
+    /**
+     * Compacts the lowest level that is full
+     */
+    private void compress()
+    {
+	for (int level = 0; level < levels.length; level++)
+	{
+	    if (sizes[level] < capacity(level)) continue;
+	    if (level + 1 == levels.length) grow();
+
+	    double[] values = levels[level];
+	    int size = sizes[level];
+	    Arrays.sort(values, 0, size);
+
+	    // An odd value out stays on this level
+	    int pairs = size / 2;
+	    int offset = nextBit();
+	    ensureCapacity(level + 1, pairs);
+	    double[] above = levels[level + 1];
+	    for (int i = 0; i < pairs; i++)
+		above[sizes[level + 1]++] = values[2 * i + offset];
+
+	    if (size % 2 == 1) values[0] = values[size - 1];
+	    sizes[level] = size % 2;
+	    retained -= size - sizes[level] - pairs;
+	    return;
+	}
+    }
+
+    private int nextBit()
+    {
+	random ^= random << 13;
+	random ^= random >>> 7;
+	random ^= random << 17;
+	return (int) (random & 1);
+    }
+
+    /**
+     * Get the number of values that the sketch keeps
+     * 
+     * @return The number of kept values
+     */
+    int getRetained()
+    {
+	return retained;
+    }
+
+    @Override
+    public Double finish()
+    {
+	if (retained == 0) return 0d;
+
+	long total = 0;
+	for (int level = 0; level < levels.length; level++)
+	{
+	    Arrays.sort(levels[level], 0, sizes[level]);
+	    total += (long) sizes[level] << level;
+	}
+
+	// Walk the sorted levels together, weighing each value by its level
+	long target = Math.max(1, (long) Math.ceil(quantile * total));
+	int[] positions = new int[levels.length];
+	long rank = 0;
+	while (true)
+	{
+	    int lowest = -1;
+	    for (int level = 0; level < levels.length; level++)
+		if (positions[level] < sizes[level]
+			&& (lowest == -1 || levels[level][positions[level]] < levels[lowest][positions[lowest]]))
+		    lowest = level;
+
+	    double value = levels[lowest][positions[lowest]++];
+	    rank += 1L << lowest;
+	    if (rank >= target) return value;
+	}
+    }
+}
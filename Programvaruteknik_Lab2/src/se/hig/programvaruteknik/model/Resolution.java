@@ -4,13 +4,14 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.Map.Entry;
+import java.util.function.LongUnaryOperator;
 
 /**
- * How to group data
+ * How to group data into calendar units
  * 
  * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
  */
-public enum Resolution
+public enum Resolution implements DateResolution
 {
     /**
      * Group into years<br>
@@ -18,7 +19,7 @@ public enum Resolution
      * Uses {@link DateTimeFormatter#ofPattern(String,Locale)
      * DateTimeFormatter.ofPattern("yyyy",Locale.UK)}
      */
-    YEAR("yyyy"),
+    YEAR("yyyy", (day) -> Math.floorDiv(toMonth(day), 12), (year) -> fromMonth(year * 12)),
 
     /**
      * Group into quarters of a year<br>
@@ -26,7 +27,7 @@ public enum Resolution
      * Uses {@link DateTimeFormatter#ofPattern(String,Locale)
      * DateTimeFormatter.ofPattern("yyyy-'Q'Q",Locale.UK)}
      */
-    QUARTER("yyyy-'Q'Q"),
+    QUARTER("yyyy-'Q'Q", (day) -> Math.floorDiv(toMonth(day), 3), (quarter) -> fromMonth(quarter * 3)),
 
     /**
      * Group into months<br>
@@ -34,7 +35,7 @@ public enum Resolution
      * Uses {@link DateTimeFormatter#ofPattern(String,Locale)
      * DateTimeFormatter.ofPattern("yyyy-MM",Locale.UK)}
      */
-    MONTH("yyyy-MM"),
+    MONTH("yyyy-MM", Resolution::toMonth, Resolution::fromMonth),
 
     /**
      * Group into weeks<br>
@@ -42,7 +43,7 @@ public enum Resolution
      * Uses {@link DateTimeFormatter#ofPattern(String,Locale)
      * DateTimeFormatter.ofPattern("YYYY-'W'w",Locale.UK)}
      */
-    WEEK("YYYY-'W'w"),
+    WEEK("YYYY-'W'w", (day) -> Math.floorDiv(day + 3, 7), (week) -> week * 7 - 3),
 
     /**
      * Group into days<br>
@@ -50,14 +51,11 @@ public enum Resolution
      * Uses {@link DateTimeFormatter#ofPattern(String,Locale)
      * DateTimeFormatter.ofPattern("yyyy-MM-dd",Locale.UK)}
      */
-    DAY("yyyy-MM-dd");
+    DAY("yyyy-MM-dd", (day) -> day, (day) -> day);
 
     private final ResolutionResolver resolver;
-
-    Resolution(ResolutionResolver resolver)
-    {
-	this.resolver = resolver;
-    }
+    private final LongUnaryOperator bucketOf;
+    private final LongUnaryOperator startOfBucket;
 
     /**
      * @param pattern
@@ -67,8 +65,12 @@ public enum Resolution
      *            <br>
      *            Negative years appends '-' in that method<br>
      *            Years over 9999 appends '+' in that method<br>
+     * @param bucketOf
+     *            Gives the bucket of an epoch day
+     * @param startOfBucket
+     *            Gives the first epoch day of a bucket
      */
-    Resolution(String pattern)
+    Resolution(String pattern, LongUnaryOperator bucketOf, LongUnaryOperator startOfBucket)
     {
 	// We use a specific Locale because the default locale can be different
 	// on different computers
@@ -77,6 +79,8 @@ public enum Resolution
 	// would otherwise use
 	final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern, Locale.UK);
 	resolver = (date) -> date.format(formatter);
+	this.bucketOf = bucketOf;
+	this.startOfBucket = startOfBucket;
     }
 
     /**
@@ -86,6 +90,7 @@ public enum Resolution
      *            the {@link LocalDate} to convert
      * @return The key
      */
+    @Override
     public String toKey(LocalDate date)
     {
 	return resolver.resolve(date);
@@ -103,6 +108,112 @@ public enum Resolution
 	return toKey(entry.getKey());
     }
 
+    /**
+     * Converts an epoch day to the number of the bucket it belongs to<br>
+     * <br>
+     * Buckets are numbered in date order, so a later bucket always have a
+     * higher number
+     * 
+     * @param epochDay
+     *            The {@link LocalDate#toEpochDay() epoch day}
+     * @return The bucket
+     */
+    @Override
+    public long toBucket(long epochDay)
+    {
+	return bucketOf.applyAsLong(epochDay);
+    }
+
+    /**
+     * Converts a {@link LocalDate} to the number of the bucket it belongs to
+     * 
+     * @param date
+     *            The {@link LocalDate} to convert
+     * @return The bucket
+     * @see Resolution#toBucket(long)
+     */
+    @Override
+    public long toBucket(LocalDate date)
+    {
+	return toBucket(date.toEpochDay());
+    }
+
+    /**
+     * Gets the first epoch day of a bucket
+     * 
+     * @param bucket
+     *            The bucket
+     * @return The {@link LocalDate#toEpochDay() epoch day}
+     */
+    @Override
+    public long bucketStart(long bucket)
+    {
+	return startOfBucket.applyAsLong(bucket);
+    }
+
+    /**
+     * Gets the key of a bucket<br>
+     * <br>
+     * Gives the same key as {@link Resolution#toKey(LocalDate)} does for
+     * the dates in the bucket
+     * 
+     * @param bucket
+     *            The bucket
+     * @return The key
+     */
+    @Override
+    public String bucketKey(long bucket)
+    {
+	return toKey(LocalDate.ofEpochDay(bucketStart(bucket)));
+    }
+
+    /**
+     * Gets the first date of the group that a {@link LocalDate} belongs to
+     * 
+     * @param date
+     *            The {@link LocalDate}
+     * @return The first date of the group
+     */
+    @Override
+    public LocalDate startOf(LocalDate date)
+    {
+	return LocalDate.ofEpochDay(bucketStart(toBucket(date)));
+    }
+
+    /**
+     * Converts an epoch day to months since year 0 (year * 12 + month - 1)
+     */
+    static long toMonth(long epochDay)
+    {
+	// Based on 'civil_from_days' by Howard Hinnant
+	// http://howardhinnant.github.io/date_algorithms.html
+	long z = epochDay + 719468;
+	long era = Math.floorDiv(z, 146097);
+	long dayOfEra = z - era * 146097;
+	long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+	long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+	long shiftedMonth = (5 * dayOfYear + 2) / 153;
+	long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+	long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+	return year * 12 + month - 1;
+    }
+
+    /**
+     * Converts months since year 0 to the epoch day of the first day in
+     * that month
+     */
+    static long fromMonth(long months)
+    {
+	// Based on 'days_from_civil' by Howard Hinnant
+	long month = Math.floorMod(months, 12) + 1;
+	long year = Math.floorDiv(months, 12) - (month <= 2 ? 1 : 0);
+	long era = Math.floorDiv(year, 400);
+	long yearOfEra = year - era * 400;
+	long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+	long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+	return era * 146097 + dayOfEra - 719468;
+    }
+
     @FunctionalInterface
     private interface ResolutionResolver
     {
@@ -0,0 +1,171 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * Matches two {@link DataSource}s at any {@link DateResolution} from a single
+ * pass over their data<br>
+ * <br>
+ * The values of the sources are merged into one {@link Accumulator} per day,
+ * and the coarser resolutions are derived by combining the accumulators of
+ * the resolution below them:
+ * <ul>
+ * <li>{@link Resolution#DAY} into {@link Resolution#WEEK} and
+ * {@link Resolution#MONTH}</li>
+ * <li>{@link Resolution#MONTH} into {@link Resolution#QUARTER}</li>
+ * <li>{@link Resolution#QUARTER} into {@link Resolution#YEAR}</li>
+ * <li>{@link Resolution#DAY} into any other {@link DateResolution}</li>
+ * </ul>
+ * Each resolution is derived the first time it is matched and then kept<br>
+ * The merge types must be able to {@link Accumulator#combine(Accumulator)
+ * combine} their accumulators without losing precision, as
+ * {@link MergeType#SUM} and {@link MergeType#AVERAGE} do
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class RollUp
+{
+    private final MergeType xMergeType;
+    private final MergeType yMergeType;
+
+    private final Map<DateResolution, Level> xLevels = new HashMap<>();
+    private final Map<DateResolution, Level> yLevels = new HashMap<>();
+
+    /**
+     * Merges the values of the sources day by day
+     * 
+     * @param xSource
+     *            The x source
+     * @param xMergeType
+     *            How to merge the x values
+     * @param ySource
+     *            The y source
+     * @param yMergeType
+     *            How to merge the y values
+     */
+    public RollUp(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType)
+    {
+	this.xMergeType = xMergeType;
+	this.yMergeType = yMergeType;
+
+	xLevels.put(Resolution.DAY, new Level(DataCollectionBuilder.groupData(xSource, xMergeType, Resolution.DAY)));
+	yLevels.put(Resolution.DAY, new Level(DataCollectionBuilder.groupData(ySource, yMergeType, Resolution.DAY)));
+    }
+
+    /**
+     * Matches the sources at a resolution
+     * 
+     * @param resolution
+     *            The resolution
+     * @return The matched data, ordered by date
+     */
+    public synchronized Map<String, MatchedDataPair> match(DateResolution resolution)
+    {
+	Level x = getLevel(xLevels, xMergeType, resolution);
+	Level y = getLevel(yLevels, yMergeType, resolution);
+
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+	int i = 0;
+	int j = 0;
+	while (i < x.size && j < y.size)
+	{
+	    if (x.buckets[i] == y.buckets[j])
+	    {
+		matches.put(
+			resolution.bucketKey(x.buckets[i]),
+			new MatchedDataPair(x.accumulators[i].finish(), y.accumulators[j].finish()));
+		i++;
+		j++;
+	    }
+	    else if (x.buckets[i] < y.buckets[j])
+		i++;
+	    else
+		j++;
+	}
+	return matches;
+    }
+
+    private static DateResolution getChild(DateResolution resolution)
+    {
+	if (resolution == Resolution.YEAR) return Resolution.QUARTER;
+	if (resolution == Resolution.QUARTER) return Resolution.MONTH;
+	return Resolution.DAY;
+    }
+
+    private static Level getLevel(Map<DateResolution, Level> levels, MergeType mergeType, DateResolution resolution)
+    {
+	Level level = levels.get(resolution);
+	if (level == null)
+	{
+	    DateResolution child = getChild(resolution);
+	    level = getLevel(levels, mergeType, child).rollUp(child, resolution, mergeType);
+	    levels.put(resolution, level);
+	}
+	return level;
+    }
+
+    /**
+     * The accumulators of one resolution, ordered by bucket
+     */
+    private static class Level
+    {
+	private final long[] buckets;
+	private final Accumulator[] accumulators;
+	private final int size;
+
+	private Level(long[] buckets, Accumulator[] accumulators, int size)
+	{
+	    this.buckets = buckets;
+	    this.accumulators = accumulators;
+	    this.size = size;
+	}
+
+	private Level(Map<Long, Accumulator> groups)
+	{
+	    size = groups.size();
+	    buckets = new long[size];
+	    accumulators = new Accumulator[size];
+
+	    int i = 0;
+	    for (Long bucket : groups.keySet())
+		buckets[i++] = bucket;
+	    Arrays.sort(buckets);
+	    for (i = 0; i < size; i++)
+		accumulators[i] = groups.get(buckets[i]);
+	}
+
+	/**
+	 * Combines the accumulators into the buckets of a coarser resolution
+	 * <br>
+	 * <br>
+	 * Buckets are numbered in date order in every resolution, so the
+	 * coarser buckets are visited in order and each is finished before the
+	 * next one starts
+	 */
+	private Level rollUp(DateResolution from, DateResolution to, MergeType mergeType)
+	{
+	    long[] parentBuckets = new long[size];
+	    Accumulator[] parentAccumulators = new Accumulator[size];
+	    int parentSize = 0;
+
+	    for (int i = 0; i < size; i++)
+	    {
+		long parent = to.toBucket(from.bucketStart(buckets[i]));
+		if (parentSize == 0 || parentBuckets[parentSize - 1] != parent)
+		{
+		    parentBuckets[parentSize] = parent;
+		    parentAccumulators[parentSize] = mergeType.createAccumulator();
+		    parentSize++;
+		}
+		parentAccumulators[parentSize - 1].combine(accumulators[i]);
+	    }
+
+	    return new Level(parentBuckets, parentAccumulators, parentSize);
+	}
+    }
+}
@@ -0,0 +1,312 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * Groups data into windows of days that slide forward by a stride, so a date
+ * can belong to more than one window<br>
+ * <br>
+ * Window n covers the days from origin + n * stride and length days on<br>
+ * The days are cut into panes of the greatest common divisor of the length
+ * and the stride, which are merged once each. The windows are then kept
+ * with a two-stack queue of panes, so each step of the window combines a
+ * constant number of accumulators (amortized) instead of merging the whole
+ * window again
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public class SlidingWindow
+{
+    private final int length;
+    private final int stride;
+    private final long origin;
+
+    private final DateResolution panes;
+    private final int panesPerWindow;
+    private final int panesPerStride;
+
+    /**
+     * Creates windows counted from 1970-01-01
+     * 
+     * @param length
+     *            The number of days in each window
+     * @param stride
+     *            The number of days between the start of two windows
+     */
+    public SlidingWindow(int length, int stride)
+    {
+	this(length, stride, LocalDate.ofEpochDay(0));
+    }
+
+    /**
+     * Creates windows counted from a date
+     * 
+     * @param length
+     *            The number of days in each window
+     * @param stride
+     *            The number of days between the start of two windows
+     * @param origin
+     *            The first date of a window
+     * @throws IllegalArgumentException
+     *             If the length or stride is less than 1
+     */
+    public SlidingWindow(int length, int stride, LocalDate origin)
+    {
+	if (length < 1) throw new IllegalArgumentException("Too short length: " + length);
+	if (stride < 1) throw new IllegalArgumentException("Too short stride: " + stride);
+
+	this.length = length;
+	this.stride = stride;
+	this.origin = Math.floorMod(origin.toEpochDay(), stride);
+
+	int pane = gcd(length, stride);
+	panes = DateResolution.days(pane, LocalDate.ofEpochDay(this.origin));
+	panesPerWindow = length / pane;
+	panesPerStride = stride / pane;
+    }
+
+    private static int gcd(int a, int b)
+    {
+	return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Gets the first date of a window
+     * 
+     * @param window
+     *            The number of the window
+     * @return The first date
+     */
+    public LocalDate windowStart(long window)
+    {
+	return LocalDate.ofEpochDay(origin + window * stride);
+    }
+
+    /**
+     * Gets the key of a window, which is its first date, as in "2016-02-01"
+     * 
+     * @param window
+     *            The number of the window
+     * @return The key
+     */
+    public String windowKey(long window)
+    {
+	return windowStart(window).toString();
+    }
+
+    /**
+     * Merges the values of a source in every window that have any values
+     * 
+     * @param source
+     *            The source
+     * @param mergeType
+     *            How to merge the values
+     * @return The merged values by the first date of their window, in date
+     *         order
+     */
+    public Map<LocalDate, Double> aggregate(DataSource source, MergeType mergeType)
+    {
+	Windows windows = new Windows(source, mergeType);
+	Map<LocalDate, Double> values = new LinkedHashMap<>();
+	for (int i = 0; i < windows.size; i++)
+	    values.put(windowStart(windows.ids[i]), windows.values[i]);
+	return values;
+    }
+
+    /**
+     * Matches two sources in the windows that both have values in
+     * 
+     * @param xSource
+     *            The x source
+     * @param xMergeType
+     *            How to merge the x values
+     * @param ySource
+     *            The y source
+     * @param yMergeType
+     *            How to merge the y values
+     * @return The matched data by {@link SlidingWindow#windowKey(long) key},
+     *         in date order
+     */
+    public Map<String, MatchedDataPair> match(DataSource xSource, MergeType xMergeType, DataSource ySource, MergeType yMergeType)
+    {
+	Windows x = new Windows(xSource, xMergeType);
+	Windows y = new Windows(ySource, yMergeType);
+
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+	int i = 0;
+	int j = 0;
+	while (i < x.size && j < y.size)
+	{
+	    if (x.ids[i] == y.ids[j])
+	    {
+		matches.put(windowKey(x.ids[i]), new MatchedDataPair(x.values[i], y.values[j]));
+		i++;
+		j++;
+	    }
+	    else if (x.ids[i] < y.ids[j])
+		i++;
+	    else
+		j++;
+	}
+	return matches;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+	if (!(object instanceof SlidingWindow)) return false;
+
+	SlidingWindow other = (SlidingWindow) object;
+	return length == other.length && stride == other.stride && origin == other.origin;
+    }
+
+    @Override
+    public int hashCode()
+    {
+	return (int) ((length * 31 + stride) * 31 + origin);
+    }
+
+    @Override
+    public String toString()
+    {
+	return "[SlidingWindow: " + length + " days every " + stride + " days from " + windowStart(0) + "]";
+    }
+
+    /**
+     * The merged values of the windows of one source that have any values
+     */
+    private class Windows
+    {
+	private long[] ids = new long[16];
+	private double[] values = new double[16];
+	private int size = 0;
+
+	private final MergeType mergeType;
+
+	// The queue of panes in the window, as two stacks
+	// The top of the front stack is the oldest pane, and each entry in it
+	// holds its pane combined with all newer panes in the front stack
+	private final long[] frontIds = new long[panesPerWindow];
+	private final Accumulator[] frontAccumulators = new Accumulator[panesPerWindow];
+	private int frontSize = 0;
+
+	private final long[] backIds = new long[panesPerWindow];
+	private final Accumulator[] backPanes = new Accumulator[panesPerWindow];
+	private int backSize = 0;
+	private Accumulator backAccumulator = null;
+
+	private Windows(DataSource source, MergeType mergeType)
+	{
+	    this.mergeType = mergeType;
+
+	    Map<Long, Accumulator> groups = DataCollectionBuilder.groupData(source, mergeType, panes);
+	    long[] paneIds = new long[groups.size()];
+	    int count = 0;
+	    for (Long pane : groups.keySet())
+		paneIds[count++] = pane;
+	    Arrays.sort(paneIds);
+	    if (count == 0) return;
+
+	    // Window w holds the panes from w * panesPerStride and
+	    // panesPerWindow panes on
+	    int next = 0;
+	    long window = firstWindowOf(paneIds[0]);
+	    while (true)
+	    {
+		long first = window * panesPerStride;
+		while (!isEmpty() && oldest() < first)
+		    pop();
+		while (next < count && paneIds[next] < first + panesPerWindow)
+		{
+		    // Panes between two windows (when the stride is longer than the
+		    // window) belong to none of them
+		    if (paneIds[next] >= first) push(paneIds[next], groups.get(paneIds[next]));
+		    next++;
+		}
+
+		if (isEmpty())
+		{
+		    if (next == count) break;
+		    window = firstWindowOf(paneIds[next]);
+		    continue;
+		}
+
+		add(window, merged());
+		window++;
+	    }
+	}
+
+	private long firstWindowOf(long pane)
+	{
+	    return -Math.floorDiv(-(pane - panesPerWindow + 1), panesPerStride);
+	}
+
+	private void add(long window, double value)
+	{
+	    if (size == ids.length)
+	    {
+		ids = Arrays.copyOf(ids, size * 2);
+		values = Arrays.copyOf(values, size * 2);
+	    }
+	    ids[size] = window;
+	    values[size] = value;
+	    size++;
+	}
+
+	private boolean isEmpty()
+	{
+	    return frontSize == 0 && backSize == 0;
+	}
+
+	private long oldest()
+	{
+	    return frontSize > 0 ? frontIds[frontSize - 1] : backIds[0];
+	}
+
+	private void push(long pane, Accumulator accumulator)
+	{
+	    backIds[backSize] = pane;
+	    backPanes[backSize] = accumulator;
+	    backSize++;
+
+	    if (backAccumulator == null) backAccumulator = mergeType.createAccumulator();
+	    backAccumulator.combine(accumulator);
+	}
+
+	private void pop()
+	{
+	    if (frontSize == 0)
+	    {
+		// Move the back stack over, newest first, so the oldest pane
+		// ends up on top
+		for (int i = backSize - 1; i >= 0; i--)
+		{
+		    Accumulator accumulator = mergeType.createAccumulator();
+		    accumulator.combine(backPanes[i]);
+		    if (frontSize > 0) accumulator.combine(frontAccumulators[frontSize - 1]);
+		    frontIds[frontSize] = backIds[i];
+		    frontAccumulators[frontSize] = accumulator;
+		    frontSize++;
+		    backPanes[i] = null;
+		}
+		backSize = 0;
+		backAccumulator = null;
+	    }
+
+	    frontAccumulators[--frontSize] = null;
+	}
+
+	private double merged()
+	{
+	    Accumulator accumulator = mergeType.createAccumulator();
+	    if (frontSize > 0) accumulator.combine(frontAccumulators[frontSize - 1]);
+	    if (backAccumulator != null) accumulator.combine(backAccumulator);
+	    return accumulator.finish();
+	}
+    }
+}
@@ -0,0 +1,246 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * How to group timestamped data into spans of seconds<br>
+ * <br>
+ * Timestamps are {@link java.time.Instant#getEpochSecond() epoch seconds}
+ * in UTC, and every span has the same length, so the span of a timestamp is
+ * found by a single division<br>
+ * The key of a span is its first date and time, as in "2016-02-01T13:00"
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ * @see TimeSeries
+ */
+public final class TimeResolution
+{
+    /**
+     * Group into minutes
+     */
+    public final static TimeResolution MINUTE = seconds(60);
+
+    /**
+     * Group into hours
+     */
+    public final static TimeResolution HOUR = seconds(60 * 60);
+
+    /**
+     * Group into days (in UTC)
+     */
+    public final static TimeResolution DAY = seconds(24 * 60 * 60);
+
+    private final long seconds;
+    private final long origin;
+
+    private TimeResolution(long seconds, long origin)
+    {
+	this.seconds = seconds;
+	this.origin = Math.floorMod(origin, seconds);
+    }
+
+    /**
+     * Groups into spans of seconds, counted from 1970-01-01T00:00
+     * 
+     * @param seconds
+     *            The number of seconds in each span
+     * @return The resolution
+     */
+    public static TimeResolution seconds(long seconds)
+    {
+	return seconds(seconds, 0);
+    }
+
+    /**
+     * Groups into spans of seconds, counted from a timestamp
+     * 
+     * @param seconds
+     *            The number of seconds in each span
+     * @param origin
+     *            The epoch second that starts a span, the spans before and
+     *            after it follows from it
+     * @return The resolution
+     * @throws IllegalArgumentException
+     *             If the number of seconds is less than 1
+     */
+    public static TimeResolution seconds(long seconds, long origin)
+    {
+	if (seconds < 1) throw new IllegalArgumentException("Too few seconds: " + seconds);
+	return new TimeResolution(seconds, origin);
+    }
+
+    /**
+     * Converts an epoch second to the number of the span it belongs to
+     * 
+     * @param epochSecond
+     *            The epoch second
+     * @return The span
+     */
+    public long toBucket(long epochSecond)
+    {
+	return Math.floorDiv(epochSecond - origin, seconds);
+    }
+
+    /**
+     * Gets the first epoch second of a span
+     * 
+     * @param bucket
+     *            The span
+     * @return The epoch second
+     */
+    public long bucketStart(long bucket)
+    {
+	return origin + bucket * seconds;
+    }
+
+    /**
+     * Gets the key of a span
+     * 
+     * @param bucket
+     *            The span
+     * @return The key
+     */
+    public String bucketKey(long bucket)
+    {
+	return LocalDateTime.ofEpochSecond(bucketStart(bucket), 0, ZoneOffset.UTC).toString();
+    }
+
+    /**
+     * Converts an epoch second to the key of the span it belongs to
+     * 
+     * @param epochSecond
+     *            The epoch second
+     * @return The key
+     */
+    public String toKey(long epochSecond)
+    {
+	return bucketKey(toBucket(epochSecond));
+    }
+
+    /**
+     * Merges the values of a series in every span that have any values
+     * 
+     * @param series
+     *            The series
+     * @param mergeType
+     *            How to merge the values
+     * @return The merged values by {@link TimeResolution#bucketKey(long)
+     *         key}, in time order
+     */
+    public Map<String, Double> aggregate(TimeSeries series, MergeType mergeType)
+    {
+	Spans spans = new Spans(series, mergeType);
+	Map<String, Double> values = new LinkedHashMap<>();
+	for (int i = 0; i < spans.size; i++)
+	    values.put(bucketKey(spans.ids[i]), spans.values[i]);
+	return values;
+    }
+
+    /**
+     * Matches two series in the spans that both have values in
+     * 
+     * @param xSeries
+     *            The x series
+     * @param xMergeType
+     *            How to merge the x values
+     * @param ySeries
+     *            The y series
+     * @param yMergeType
+     *            How to merge the y values
+     * @return The matched data by {@link TimeResolution#bucketKey(long) key},
+     *         in time order
+     */
+    public Map<String, MatchedDataPair> match(TimeSeries xSeries, MergeType xMergeType, TimeSeries ySeries, MergeType yMergeType)
+    {
+	Spans x = new Spans(xSeries, xMergeType);
+	Spans y = new Spans(ySeries, yMergeType);
+
+	Map<String, MatchedDataPair> matches = new LinkedHashMap<>();
+	int i = 0;
+	int j = 0;
+	while (i < x.size && j < y.size)
+	{
+	    if (x.ids[i] == y.ids[j])
+	    {
+		matches.put(bucketKey(x.ids[i]), new MatchedDataPair(x.values[i], y.values[j]));
+		i++;
+		j++;
+	    }
+	    else if (x.ids[i] < y.ids[j])
+		i++;
+	    else
+		j++;
+	}
+	return matches;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+	if (!(object instanceof TimeResolution)) return false;
+
+	TimeResolution other = (TimeResolution) object;
+	return seconds == other.seconds && origin == other.origin;
+    }
+
+    @Override
+    public int hashCode()
+    {
+	return Long.hashCode(seconds * 31 + origin);
+    }
+
+    @Override
+    public String toString()
+    {
+	return "[TimeResolution: " + seconds + " seconds from " + bucketKey(0) + "]";
+    }
+
+    /**
+     * The merged values of the spans of one series that have any values
+     */
+    private class Spans
+    {
+	private long[] ids = new long[16];
+	private double[] values = new double[16];
+	private int size = 0;
+
+	private Spans(TimeSeries series, MergeType mergeType)
+	{
+	    // The series is sorted by time, so every span is a run of values
+	    int count = series.size();
+	    int index = 0;
+	    while (index < count)
+	    {
+		long span = toBucket(series.getTime(index));
+		long end = bucketStart(span + 1);
+		Accumulator accumulator = mergeType.createAccumulator();
+		do
+		{
+		    accumulator.accept(series.getValue(index));
+		    index++;
+		}
+		while (index < count && series.getTime(index) < end);
+
+		add(span, accumulator.finish());
+	    }
+	}
+
+	private void add(long span, double value)
+	{
+	    if (size == ids.length)
+	    {
+		ids = Arrays.copyOf(ids, size * 2);
+		values = Arrays.copyOf(values, size * 2);
+	    }
+	    ids[size] = span;
+	    values[size] = value;
+	    size++;
+	}
+    }
+}
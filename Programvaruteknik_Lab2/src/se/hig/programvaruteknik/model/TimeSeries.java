@@ -0,0 +1,146 @@
+package se.hig.programvaruteknik.model;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+/**
+ * A source of timestamped data, such as hourly observations<br>
+ * <br>
+ * The values are kept by index in time order, with timestamps as
+ * {@link java.time.Instant#getEpochSecond() epoch seconds} in UTC, so no
+ * object is needed per value
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ * @see TimeResolution
+ */
+public interface TimeSeries
+{
+    /**
+     * Get the name of the series
+     * 
+     * @return The name
+     */
+    public String getName();
+
+    /**
+     * Get the unit of the series
+     * 
+     * @return The unit
+     */
+    public String getUnit();
+
+    /**
+     * Get the name of the source or null
+     * 
+     * @return The name
+     */
+    public default String getSourceName()
+    {
+	return null;
+    }
+
+    /**
+     * Get the link of the source or null
+     * 
+     * @return The link
+     */
+    public default String getSourceLink()
+    {
+	return null;
+    }
+
+    /**
+     * Get the number of values in the series
+     * 
+     * @return The number of values
+     */
+    public int size();
+
+    /**
+     * Get the timestamp of a value<br>
+     * <br>
+     * A later index never have an earlier timestamp
+     * 
+     * @param index
+     *            The index of the value
+     * @return The epoch second
+     */
+    public long getTime(int index);
+
+    /**
+     * Get a value
+     * 
+     * @param index
+     *            The index of the value
+     * @return The value
+     */
+    public double getValue(int index);
+
+    /**
+     * Merges the values of each day (in UTC) into a {@link DataSource}, so the
+     * series can be used where days are expected
+     * 
+     * @param mergeType
+     *            How to merge the values of a day
+     * @return The data source
+     */
+    public default DataSource toDataSource(MergeType mergeType)
+    {
+	NavigableMap<LocalDate, Double> data = new TreeMap<>();
+	int count = size();
+	int index = 0;
+	while (index < count)
+	{
+	    long day = Math.floorDiv(getTime(index), 24 * 60 * 60);
+	    Accumulator accumulator = mergeType.createAccumulator();
+	    do
+	    {
+		accumulator.accept(getValue(index));
+		index++;
+	    }
+	    while (index < count && Math.floorDiv(getTime(index), 24 * 60 * 60) == day);
+
+	    data.put(LocalDate.ofEpochDay(day), accumulator.finish());
+	}
+
+	Map<LocalDate, Double> days = Collections.unmodifiableNavigableMap(data);
+	TimeSeries series = this;
+	return new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return series.getName();
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return series.getUnit();
+	    }
+
+	    @Override
+	    public String getSourceName()
+	    {
+		return series.getSourceName();
+	    }
+
+	    @Override
+	    public String getSourceLink()
+	    {
+		return series.getSourceLink();
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return days;
+	    }
+	};
+    }
+}
@@ -0,0 +1,336 @@
+package se.hig.programvaruteknik.model;
+
+import java.util.Arrays;
+
+/**
+ * Generic builder of time series<br>
+ * <br>
+ * The generated values are collected into arrays of epoch seconds and
+ * values, which are sorted by time, and values with the same timestamp are
+ * reduced to one
+ * 
+ * @author Viktor Hanstorp (ndi14vhp@student.hig.se)
+ */
+public abstract class TimeSeriesBuilder
+{
+    private String sourceName = null;
+    private String sourceLink = null;
+
+    private MergeType dataReducer = MergeType.SUM;
+
+    /**
+     * The name of the series
+     */
+    public final CachedValue<String> name = new CachedValue<>();
+
+    /**
+     * The unit of the series
+     */
+    public final CachedValue<String> unit = new CachedValue<>();
+
+    /**
+     * Set the name of the source
+     * 
+     * @param sourceName
+     *            The name
+     * @return This builder
+     */
+    public TimeSeriesBuilder setSourceName(String sourceName)
+    {
+	this.sourceName = sourceName;
+	return this;
+    }
+
+    /**
+     * Set the link of the source
+     * 
+     * @param sourceLink
+     *            The link
+     * @return This builder
+     */
+    public TimeSeriesBuilder setSourceLink(String sourceLink)
+    {
+	this.sourceLink = sourceLink;
+	return this;
+    }
+
+    /**
+     * Sets the name of the series
+     * 
+     * @param name
+     *            The name
+     * @return This builder
+     */
+    public TimeSeriesBuilder setName(String name)
+    {
+	this.name.updateSupplier(() -> name);
+	return this;
+    }
+
+    /**
+     * Sets the unit of the series
+     * 
+     * @param unit
+     *            The unit
+     * @return This builder
+     */
+    public TimeSeriesBuilder setUnit(String unit)
+    {
+	this.unit.updateSupplier(() -> unit);
+	return this;
+    }
+
+    /**
+     * Sets the data reducer<br>
+     * <br>
+     * Reduces values with the same timestamp to a single value
+     * 
+     * @param dataReducer
+     *            The data reducer
+     * @return This builder
+     */
+    public TimeSeriesBuilder setDataReducer(MergeType dataReducer)
+    {
+	this.dataReducer = dataReducer;
+	return this;
+    }
+
+    /**
+     * Generates the data of the series, in any order
+     * 
+     * @param consumer
+     *            Takes each timestamp and value
+     */
+    protected abstract void generateData(TimeValueConsumer consumer);
+
+    /**
+     * Builds the series
+     * 
+     * @return The series
+     * @throws TimeSeriesBuilderException
+     *             If errors occurs
+     */
+    public final TimeSeries build()
+    {
+	try
+	{
+	    if (!name.canGiveValue()) throw new TimeSeriesBuilderException("Missing name");
+	    if (!unit.canGiveValue()) throw new TimeSeriesBuilderException("Missing unit");
+	    if (dataReducer == null) throw new TimeSeriesBuilderException("Missing reducer");
+
+	    Collector collector = new Collector();
+	    generateData(collector);
+	    collector.sort();
+	    collector.reduce(dataReducer);
+
+	    return new ArraySeries(name.get(), unit.get(), sourceName, sourceLink, collector.times, collector.values, collector.size);
+	}
+	catch (Exception exception)
+	{
+	    throw exception instanceof TimeSeriesBuilderException ? (TimeSeriesBuilderException) exception : new TimeSeriesBuilderException(exception);
+	}
+    }
+
+    /**
+     * Takes a timestamped value
+     */
+    @FunctionalInterface
+    public interface TimeValueConsumer
+    {
+	/**
+	 * Takes a value
+	 * 
+	 * @param epochSecond
+	 *            The timestamp, as epoch seconds in UTC
+	 * @param value
+	 *            The value
+	 */
+	public void accept(long epochSecond, double value);
+    }
+
+    /**
+     * Collects the generated values into growing arrays
+     */
+    private static class Collector implements TimeValueConsumer
+    {
+	private long[] times = new long[64];
+	private double[] values = new double[64];
+	private int size = 0;
+	private boolean sorted = true;
+
+	@Override
+	public void accept(long epochSecond, double value)
+	{
+	    if (size == times.length)
+	    {
+		times = Arrays.copyOf(times, size * 2);
+		values = Arrays.copyOf(values, size * 2);
+	    }
+	    if (size > 0 && epochSecond < times[size - 1]) sorted = false;
+	    times[size] = epochSecond;
+	    values[size] = value;
+	    size++;
+	}
+
+	private void sort()
+	{
+	    // Most sources already come in time order
+	    if (!sorted) sort(0, size - 1);
+	}
+
+	private void sort(int low, int high)
+	{
+	    while (low < high)
+	    {
+		long pivot = times[(low + high) >>> 1];
+		int i = low;
+		int j = high;
+		while (i <= j)
+		{
+		    while (times[i] < pivot)
+			i++;
+		    while (times[j] > pivot)
+			j--;
+		    if (i <= j) swap(i++, j--);
+		}
+
+		// Recurse into the smaller part to keep the stack shallow
+		if (j - low < high - i)
+		{
+		    sort(low, j);
+		    low = i;
+		}
+		else
+		{
+		    sort(i, high);
+		    high = j;
+		}
+	    }
+	}
+
+	private void swap(int i, int j)
+	{
+	    long time = times[i];
+	    times[i] = times[j];
+	    times[j] = time;
+
+	    double value = values[i];
+	    values[i] = values[j];
+	    values[j] = value;
+	}
+
+	private void reduce(MergeType mergeType)
+	{
+	    int reduced = 0;
+	    int from = 0;
+	    while (from < size)
+	    {
+		int to = from + 1;
+		while (to < size && times[to] == times[from])
+		    to++;
+
+		double value = mergeType.merge(values, from, to);
+		times[reduced] = times[from];
+		values[reduced] = value;
+		reduced++;
+		from = to;
+	    }
+	    size = reduced;
+	}
+    }
+
+    /**
+     * A series held in arrays
+     */
+    private static class ArraySeries implements TimeSeries
+    {
+	private final String name;
+	private final String unit;
+	private final String sourceName;
+	private final String sourceLink;
+
+	private final long[] times;
+	private final double[] values;
+
+	private ArraySeries(String name, String unit, String sourceName, String sourceLink, long[] times, double[] values, int size)
+	{
+	    this.name = name;
+	    this.unit = unit;
+	    this.sourceName = sourceName;
+	    this.sourceLink = sourceLink;
+	    this.times = Arrays.copyOf(times, size);
+	    this.values = Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public String getName()
+	{
+	    return name;
+	}
+
+	@Override
+	public String getUnit()
+	{
+	    return unit;
+	}
+
+	@Override
+	public String getSourceName()
+	{
+	    return sourceName;
+	}
+
+	@Override
+	public String getSourceLink()
+	{
+	    return sourceLink;
+	}
+
+	@Override
+	public int size()
+	{
+	    return times.length;
+	}
+
+	@Override
+	public long getTime(int index)
+	{
+	    return times[index];
+	}
+
+	@Override
+	public double getValue(int index)
+	{
+	    return values[index];
+	}
+    }
+
+    /**
+     * Indicates errors when building a series
+     */
+    @SuppressWarnings("serial")
+    public class TimeSeriesBuilderException extends RuntimeException
+    {
+	/**
+	 * Create exception
+	 * 
+	 * @param exception
+	 *            The exception that resulted in this exception
+	 */
+	public TimeSeriesBuilderException(Exception exception)
+	{
+	    super(exception);
+	}
+
+	/**
+	 * Create exception
+	 * 
+	 * @param exception
+	 *            The reason
+	 */
+	public TimeSeriesBuilderException(String exception)
+	{
+	    super(exception);
+	}
+    }
+}
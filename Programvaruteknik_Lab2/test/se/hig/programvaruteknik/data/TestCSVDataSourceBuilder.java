@@ -3,9 +3,12 @@ package se.hig.programvaruteknik.data;
 import static org.junit.Assert.*;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -80,6 +83,60 @@ public class TestCSVDataSourceBuilder
 	assertEquals(expectedData, dataSource.getData());
     }
 
+    @Test
+    public void testForEachRow()
+    {
+	String[] sources = { "", "a", "\n", "\na\r\nb", "a\n\n\rb\u2028", "a;1\r\nb;2\r\n", "\r\n\r\nx" };
+	for (String source : sources)
+	{
+	    List<String> rows = new ArrayList<>();
+	    CSVDataSourceBuilder.forEachRow(source, rows::add);
+	    assertEquals(source, CSVDataSourceBuilder.DEFAULT_ROWEXTRACTOR.apply(source), rows);
+	}
+    }
+
+    @Test
+    public void testDefaultRows()
+    {
+	Map<LocalDate, Double> expectedData = new TreeMap<LocalDate, Double>();
+	expectedData.put(LocalDate.of(2016, 2, 26), 3d);
+	expectedData.put(LocalDate.of(2016, 2, 28), 3d);
+
+	CSVDataSourceBuilder rowBuilder = new CSVDataSourceBuilder(
+		() -> "Date;Value\n2016-02-28;3\n2016-02-26;1\n2016-02-26;2\n2016-02-27;8",
+		"Name",
+		"Unit",
+		(row, adder) -> adder.accept(LocalDate.parse(row.split(";")[0]), Double.parseDouble(row.split(";")[1])));
+	rowBuilder.setRowFilter((row) -> row.startsWith("Date") || row.endsWith("8"));
+
+	assertEquals(expectedData, rowBuilder.build().getData());
+    }
+
+    @Test
+    public void testHeader()
+    {
+	Map<LocalDate, Double> expectedData = new TreeMap<LocalDate, Double>();
+	expectedData.put(LocalDate.of(2016, 2, 26), 1d);
+	expectedData.put(LocalDate.of(2016, 2, 27), 2d);
+	expectedData.put(LocalDate.of(2016, 2, 28), 3d);
+
+	builder.setRowExtractor(CSVDataSourceBuilder.DEFAULT_ROWEXTRACTOR);
+	builder.setHeader((row) -> row.startsWith("Date;Invalid;Value"));
+	assertEquals(expectedData, builder.build().getData());
+	assertEquals(expectedData, builder.generateData().entrySet().stream().collect(Collectors.toMap((entry) -> entry.getKey(), (entry) -> entry.getValue().get(0))));
+
+	builder.setHeader((row) -> false);
+	try
+	{
+	    builder.build();
+	    fail("Built without a header");
+	}
+	catch (DataSourceBuilderException exception)
+	{
+
+	}
+    }
+
     @Test(expected = DataSourceBuilderException.class)
     public void testMissingSource()
     {
@@ -21,17 +21,22 @@ public class TestSMHIData
 
     @BeforeClass
     public static void init() throws DataSourceException
+    {
+	temperatureBuilder = createBuilder();
+    }
+
+    private static SMHISourceBuilder createBuilder()
     {
 	SMHILocation location = SMHILocation.GÄVLE_A;
 	SMHISourceBuilder.DataType dataType = DataType.TEMPERATURE;
 
-	temperatureBuilder = new SMHISourceBuilder((url) ->
+	SMHISourceBuilder builder = new SMHISourceBuilder((url) ->
 	{
 	    assertEquals("Can't fetch url form enum", url, String.format(location.url, dataType.parameter));
 	    return DataSupplierFactory.createFileFetcher("data/test/TestSMHIData1.json").get();
 	} , dataType, location);
 
-	temperatureBuilder.setPeriod((url) ->
+	builder.setPeriod((url) ->
 	{
 	    switch (url)
 	    {
@@ -48,6 +53,7 @@ public class TestSMHIData
 		return null;
 	    }
 	} , Period.OLD);
+	return builder;
     }
 
     @Test
@@ -66,4 +72,26 @@ public class TestSMHIData
 	assertEquals(new Double(4.3), data.get(LocalDate.of(2015, 10, 30)));
 	assertEquals(new Double(8.0), data.get(LocalDate.of(2015, 10, 31)));
     }
+
+    @Test
+    public void testShared()
+    {
+	// Data read from files must not be shared with data from SMHI
+	SMHISourceBuilder fetched = createBuilder();
+	assertNull(fetched.getConfiguration());
+	DataSource source = fetched.buildShared();
+	assertNotSame(source, createBuilder().buildShared());
+
+	SMHISourceBuilder renamed = createBuilder();
+	renamed.setName("Renamed");
+	assertNull(renamed.getConfiguration());
+	assertEquals("Renamed", renamed.buildShared().getName());
+
+	SMHISourceBuilder filtered = createBuilder();
+	filtered.setRowFilter((row) -> false);
+	assertNull(filtered.getConfiguration());
+	assertNotSame(source, filtered.buildShared());
+
+	assertEquals("Gävle A", source.getName());
+    }
 }
@@ -0,0 +1,166 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestColumnarDataSource
+{
+    private static ColumnarDataSource getSource()
+    {
+	return ColumnarDataSource.of("Name", "Unit", null, null, new int[] { -3, 0, 5, 6, 100 }, new double[] { 1, 2, 3, 4, 5 });
+    }
+
+    @Test
+    public void testAccessors()
+    {
+	ColumnarDataSource source = getSource();
+	assertEquals(5, source.size());
+	assertEquals(5, source.getEpochDay(2));
+	assertEquals(4, source.getValue(3), 0);
+
+	assertEquals(3, source.indexOf(6));
+	assertEquals(-3, source.indexOf(1));
+	assertEquals(-6, source.indexOf(Long.MAX_VALUE));
+	assertEquals(2, source.getValue(LocalDate.ofEpochDay(0)), 0);
+	assertNull(source.getValue(LocalDate.ofEpochDay(1)));
+    }
+
+    @Test
+    public void testView()
+    {
+	TreeMap<LocalDate, Double> expected = new TreeMap<>();
+	int[] days = { -3, 0, 5, 6, 100 };
+	for (int i = 0; i < days.length; i++)
+	    expected.put(LocalDate.ofEpochDay(days[i]), (double) i + 1);
+
+	SortedMap<LocalDate, Double> data = getSource().getData();
+	assertEquals(expected, data);
+	assertEquals(data, expected);
+	assertEquals(expected.hashCode(), data.hashCode());
+	assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(data.keySet()));
+
+	assertEquals(LocalDate.ofEpochDay(-3), data.firstKey());
+	assertEquals(LocalDate.ofEpochDay(100), data.lastKey());
+	assertEquals(expected.subMap(LocalDate.ofEpochDay(-1), LocalDate.ofEpochDay(6)), data.subMap(LocalDate.ofEpochDay(-1), LocalDate.ofEpochDay(6)));
+	assertEquals(expected.headMap(LocalDate.ofEpochDay(5)), data.headMap(LocalDate.ofEpochDay(5)));
+	assertEquals(expected.tailMap(LocalDate.ofEpochDay(6)), data.tailMap(LocalDate.ofEpochDay(6)));
+	assertEquals(1, data.tailMap(LocalDate.ofEpochDay(0)).headMap(LocalDate.ofEpochDay(5)).size());
+	assertNull(data.tailMap(LocalDate.ofEpochDay(6)).get(LocalDate.ofEpochDay(5)));
+    }
+
+    @Test
+    public void testRange()
+    {
+	ColumnarDataSource source = getSource();
+	Map<LocalDate, Double> data = new HashMap<>(source.getData());
+	DataSource unsorted = new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return "Name";
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "Unit";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return data;
+	    }
+	};
+
+	LocalDate[] bounds = { null, LocalDate.ofEpochDay(-5), LocalDate.ofEpochDay(0), LocalDate.ofEpochDay(6), LocalDate.ofEpochDay(200) };
+	for (LocalDate from : bounds)
+	    for (LocalDate to : bounds)
+	    {
+		if (from != null && to != null && from.isAfter(to)) continue;
+
+		SortedMap<LocalDate, Double> expected = new TreeMap<>(data);
+		if (from != null) expected = expected.tailMap(from);
+		if (to != null) expected = expected.headMap(to);
+
+		assertEquals(expected, source.getData(from, to));
+		assertEquals(expected, unsorted.getData(from, to));
+
+		List<Long> days = new ArrayList<>();
+		source.forEachValue(from, to, (day, value) -> days.add(day));
+		assertEquals(expected.keySet().stream().map(LocalDate::toEpochDay).collect(Collectors.toList()), days);
+	    }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange()
+    {
+	getSource().getData(LocalDate.ofEpochDay(2), LocalDate.ofEpochDay(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSubMap()
+    {
+	getSource().getData().subMap(LocalDate.ofEpochDay(6), LocalDate.ofEpochDay(5));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly()
+    {
+	getSource().getData().put(LocalDate.ofEpochDay(1), 1.0);
+    }
+
+    @Test
+    public void testForEachValue()
+    {
+	ArrayList<Long> days = new ArrayList<>();
+	getSource().forEachValue((day, value) -> days.add(day));
+	assertEquals(Arrays.asList(-3L, 0L, 5L, 6L, 100L), days);
+    }
+
+    @Test
+    public void testBuilder()
+    {
+	DataSource source = new ConstantSource().build();
+	assertTrue(source instanceof ColumnarDataSource);
+	assertEquals(Arrays.asList(LocalDate.ofEpochDay(1), LocalDate.ofEpochDay(2)), new ArrayList<>(source.getData().keySet()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsorted()
+    {
+	ColumnarDataSource.of("Name", "Unit", null, null, new int[] { 1, 1 }, new double[] { 1, 2 });
+    }
+
+    private static class ConstantSource extends DataSourceBuilder
+    {
+	private ConstantSource()
+	{
+	    setName("Name");
+	    setUnit("Unit");
+	}
+
+	@Override
+	protected Map<LocalDate, List<Double>> generateData()
+	{
+	    // Not sorted, so the builder have to sort it
+	    Map<LocalDate, List<Double>> data = new HashMap<>();
+	    data.put(LocalDate.ofEpochDay(2), Arrays.asList(1.0));
+	    data.put(LocalDate.ofEpochDay(1), Arrays.asList(1.0, 2.0));
+	    return data;
+	}
+    }
+}
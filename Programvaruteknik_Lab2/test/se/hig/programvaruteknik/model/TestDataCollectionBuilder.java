@@ -8,9 +8,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.junit.Test;
 
+import se.hig.programvaruteknik.model.DataCollectionBuilder.MatchMode;
+
 @SuppressWarnings("javadoc")
 public class TestDataCollectionBuilder
 {
@@ -132,16 +135,20 @@ public class TestDataCollectionBuilder
 
     private static void testCollection(Resolution resolution, MergeType mergeType, testCollectionCase testCase)
     {
-	DataCollectionBuilder builder = new DataCollectionBuilder(getDataSourceA(), getDataSourceB(), resolution);
-	builder.setXMergeType(mergeType);
-	builder.setYMergeType(mergeType);
-	Map<String, MatchedDataPair> data = builder.getResult().getData();
-	for (LocalDate date : dates)
+	for (MatchMode matchMode : MatchMode.values())
 	{
-	    String key = resolution.toKey(date);
-	    assertTrue("Missing key", data.containsKey(key));
-	    MatchedDataPair pair = data.get(key);
-	    testCase.test(date, pair.getXValue(), pair.getYValue());
+	    DataCollectionBuilder builder = new DataCollectionBuilder(getDataSourceA(), getDataSourceB(), resolution);
+	    builder.setXMergeType(mergeType);
+	    builder.setYMergeType(mergeType);
+	    builder.setMatchMode(matchMode);
+	    Map<String, MatchedDataPair> data = builder.getResult().getData();
+	    for (LocalDate date : dates)
+	    {
+		String key = resolution.toKey(date);
+		assertTrue("Missing key", data.containsKey(key));
+		MatchedDataPair pair = data.get(key);
+		testCase.test(date, pair.getXValue(), pair.getYValue());
+	    }
 	}
     }
 
@@ -182,6 +189,246 @@ public class TestDataCollectionBuilder
 	assertEquals(1, data.size());
     }
 
+    @Test
+    public void testPartialOverlap()
+    {
+	@SuppressWarnings("serial")
+	DataSource sourceA = getDataSource("A", "A", new HashMap<LocalDate, Double>()
+	{
+	    {
+		for (int i = 1; i <= 10; i++)
+		    put(LocalDate.of(2016, 3, i), 1d);
+	    }
+	});
+
+	@SuppressWarnings("serial")
+	DataSource sourceB = getDataSource("B", "B", new HashMap<LocalDate, Double>()
+	{
+	    {
+		for (int i = 6; i <= 20; i++)
+		    put(LocalDate.of(2016, 3, i), 2d);
+	    }
+	});
+
+	Map<String, MatchedDataPair> data = new DataCollectionBuilder(sourceA, sourceB, Resolution.DAY)
+		.getResult()
+		.getData();
+	assertEquals(5, data.size());
+	for (int i = 6; i <= 10; i++)
+	    assertTrue("Missing key", data.containsKey(Resolution.DAY.toKey(LocalDate.of(2016, 3, i))));
+	assertFalse(data.containsKey(Resolution.DAY.toKey(LocalDate.of(2016, 3, 5))));
+	assertFalse(data.containsKey(Resolution.DAY.toKey(LocalDate.of(2016, 3, 11))));
+    }
+
+    @Test
+    public void testDisjoint()
+    {
+	@SuppressWarnings("serial")
+	DataSource sourceA = getDataSource("A", "A", new HashMap<LocalDate, Double>()
+	{
+	    {
+		for (int i = 1; i <= 10; i++)
+		    put(LocalDate.of(2016, 3, i), 1d);
+	    }
+	});
+
+	// Never read, as its summary tells that it is too far away
+	DataSource sourceB = new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return "B";
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "B";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		throw new UnsupportedOperationException();
+	    }
+
+	    @Override
+	    public DataSummary getSummary()
+	    {
+		return ColumnarDataSource.of("B", "B", null, null, new int[] { (int) LocalDate.of(2016, 3, 20).toEpochDay() }, new double[] { 2 }).getSummary();
+	    }
+	};
+
+	for (MatchMode matchMode : MatchMode.values())
+	{
+	    assertTrue(new DataCollectionBuilder(sourceA, sourceB, Resolution.DAY)
+		    .setMatchMode(matchMode)
+		    .setMatchCache(null)
+		    .getResult()
+		    .getData()
+		    .isEmpty());
+	}
+    }
+
+    @Test
+    public void testOrder()
+    {
+	DataCollectionBuilder builder = new DataCollectionBuilder(getDataSourceA(), getDataSourceB(), Resolution.WEEK);
+	for (MatchMode matchMode : MatchMode.values())
+	{
+	    builder.setMatchMode(matchMode);
+
+	    LocalDate previous = null;
+	    for (String key : builder.getResult().getData().keySet())
+	    {
+		LocalDate date = dates.stream().filter((day) -> Resolution.WEEK.toKey(day).equals(key)).findFirst().get();
+		if (previous != null) assertTrue("Buckets out of order", previous.isBefore(date));
+		previous = date;
+	    }
+	    assertNotNull(previous);
+	}
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyResult()
+    {
+	new DataCollectionBuilder(getDataSourceA(), getDataSourceB(), Resolution.DAY)
+		.setMatchCache(null)
+		.getResult()
+		.getData()
+		.clear();
+    }
+
+    @Test
+    public void testLargeParallel()
+    {
+	HashMap<LocalDate, Double> xData = new HashMap<>();
+	HashMap<LocalDate, Double> yData = new HashMap<>();
+	for (int day = 0; day < 20000; day++)
+	{
+	    xData.put(LocalDate.ofEpochDay(day), (double) (day % 13));
+	    if (day % 3 != 0) yData.put(LocalDate.ofEpochDay(day + 5000), (double) (day % 7));
+	}
+	DataSource sourceX = getDataSource("X", "X", xData);
+	DataSource sourceY = getDataSource("Y", "Y", yData);
+
+	for (Resolution resolution : Resolution.values())
+	{
+	    DataCollectionBuilder builder = new DataCollectionBuilder(sourceX, sourceY, resolution);
+	    builder.setYMergeType(MergeType.AVERAGE);
+	    Map<String, MatchedDataPair> expected = builder.setMatchMode(MatchMode.HASH).getResult().getData();
+	    Map<String, MatchedDataPair> actual = builder.setMatchMode(MatchMode.PARALLEL).getResult().getData();
+
+	    assertEquals(expected.size(), actual.size());
+	    for (Entry<String, MatchedDataPair> entry : expected.entrySet())
+	    {
+		assertEquals(entry.getValue().getXValue(), actual.get(entry.getKey()).getXValue());
+		assertEquals(entry.getValue().getYValue(), actual.get(entry.getKey()).getYValue(), 1e-9);
+	    }
+	}
+    }
+
+    private static DataSource getDaySource(String name, int firstDay, int lastDay)
+    {
+	HashMap<LocalDate, Double> data = new HashMap<>();
+	for (int day = firstDay; day <= lastDay; day++)
+	    data.put(LocalDate.ofEpochDay(day), (double) (day % 11));
+	return getDataSource(name, name, data);
+    }
+
+    @Test
+    public void testUpdateDatasource()
+    {
+	for (MatchMode matchMode : MatchMode.values())
+	{
+	    for (Resolution resolution : Resolution.values())
+	    {
+		DataCollectionBuilder builder = new DataCollectionBuilder(
+			getDaySource("X", 16000, 16500),
+			getDaySource("Y", 16100, 16480),
+			resolution);
+		builder.setMatchMode(matchMode);
+		builder.getResult();
+
+		builder.updateYDatasource(getDaySource("Y", 16100, 16520));
+		builder.updateXDatasource(getDaySource("X", 16000, 16600));
+		Map<String, MatchedDataPair> actual = builder.getResult().getData();
+
+		Map<String, MatchedDataPair> expected = new DataCollectionBuilder(
+			getDaySource("X", 16000, 16600),
+			getDaySource("Y", 16100, 16520),
+			resolution).getResult().getData();
+
+		assertEquals(expected.size(), actual.size());
+		for (Entry<String, MatchedDataPair> entry : expected.entrySet())
+		{
+		    assertTrue("Missing key", actual.containsKey(entry.getKey()));
+		    assertEquals(entry.getValue().getXValue(), actual.get(entry.getKey()).getXValue());
+		    assertEquals(entry.getValue().getYValue(), actual.get(entry.getKey()).getYValue());
+		}
+	    }
+	}
+    }
+
+    @Test
+    public void testDateRange()
+    {
+	LocalDate from = LocalDate.ofEpochDay(16050);
+	LocalDate to = LocalDate.ofEpochDay(16300);
+	for (MatchMode matchMode : MatchMode.values())
+	{
+	    for (Resolution resolution : Resolution.values())
+	    {
+		Map<String, MatchedDataPair> actual = new DataCollectionBuilder(
+			getDaySource("X", 16000, 16500),
+			getDaySource("Y", 16100, 16480),
+			resolution)
+				.setMatchMode(matchMode)
+				.setDateRange(from, to)
+				.getResult()
+				.getData();
+
+		Map<String, MatchedDataPair> expected = new DataCollectionBuilder(
+			getDaySource("X", 16050, 16299),
+			getDaySource("Y", 16100, 16299),
+			resolution).getResult().getData();
+
+		assertEquals(expected.size(), actual.size());
+		for (Entry<String, MatchedDataPair> entry : expected.entrySet())
+		{
+		    assertTrue("Missing key", actual.containsKey(entry.getKey()));
+		    assertEquals(entry.getValue().getXValue(), actual.get(entry.getKey()).getXValue());
+		    assertEquals(entry.getValue().getYValue(), actual.get(entry.getKey()).getYValue());
+		}
+	    }
+	}
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDateRange()
+    {
+	new DataCollectionBuilder().setDateRange(LocalDate.ofEpochDay(2), LocalDate.ofEpochDay(1));
+    }
+
+    @Test
+    public void testUpdateChangedDatasource()
+    {
+	DataCollectionBuilder builder = new DataCollectionBuilder(
+		getDaySource("X", 16000, 16500),
+		getDaySource("Y", 16000, 16500),
+		Resolution.YEAR);
+	builder.getResult();
+
+	HashMap<LocalDate, Double> changed = new HashMap<>();
+	for (int day = 16000; day <= 16600; day++)
+	    changed.put(LocalDate.ofEpochDay(day), 1d);
+	builder.updateXDatasource(getDataSource("X", "X", changed));
+
+	for (MatchedDataPair pair : builder.getResult().getData().values())
+	    assertTrue(pair.getXValue() <= 366);
+    }
+
     @Test
     public void testDay_SUM()
     {
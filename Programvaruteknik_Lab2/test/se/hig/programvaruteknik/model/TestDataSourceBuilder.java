@@ -2,14 +2,24 @@ package se.hig.programvaruteknik.model;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import se.hig.programvaruteknik.model.DataSourceBuilder.DataSourceBuilderException;
@@ -168,4 +178,386 @@ public class TestDataSourceBuilder
 
 	assertEquals(expectedData, source.getData());
     }
+
+    private static DataSourceBuilder pushedBuilder(int[] days)
+    {
+	return pushedBuilder(days, (index) -> (double) index);
+    }
+
+    private static DataSourceBuilder pushedBuilder(int[] days, IntFunction<Double> values)
+    {
+	// Created up front, so pushing allocates nothing of its own
+	LocalDate[] dates = new LocalDate[days.length];
+	for (int i = 0; i < days.length; i++)
+	    dates[i] = LocalDate.ofEpochDay(days[i]);
+
+	return new DataSourceBuilder()
+	{
+	    {
+		setName("Name");
+		setUnit("Unit");
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		throw new UnsupportedOperationException();
+	    }
+
+	    @Override
+	    protected void generateData(BiConsumer<LocalDate, Double> consumer)
+	    {
+		for (int i = 0; i < days.length; i++)
+		    consumer.accept(dates[i], values.apply(i));
+	    }
+	};
+    }
+
+    @Test
+    public void testPushedData()
+    {
+	// In order, in reverse order and grouped by date but not in order
+	int[][] orders = { { 1, 1, 2, 5, 5, 5 }, { 5, 5, 5, 2, 1, 1 }, { 2, 5, 5, 5, 1, 1 } };
+	for (int[] days : orders)
+	{
+	    Map<LocalDate, List<Double>> groups = new TreeMap<>();
+	    for (int i = 0; i < days.length; i++)
+		groups.computeIfAbsent(LocalDate.ofEpochDay(days[i]), (key) -> new ArrayList<>()).add((double) i);
+
+	    Map<LocalDate, Double> expected = new TreeMap<>();
+	    for (Entry<LocalDate, List<Double>> entry : groups.entrySet())
+		expected.put(entry.getKey(), entry.getValue().stream().mapToDouble(Double::doubleValue).average().getAsDouble());
+
+	    DataSource source = pushedBuilder(days)
+		    .setDataReducer((date, values) -> values.stream().mapToDouble(Double::doubleValue).average().getAsDouble())
+		    .build();
+	    assertEquals(expected, source.getData());
+	    assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(source.getData().keySet()));
+
+	    DataSource primitive = pushedBuilder(days).setDataReducer(MergeType.AVERAGE).build();
+	    assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(primitive.getData().keySet()));
+	    for (Entry<LocalDate, Double> entry : expected.entrySet())
+		assertEquals(entry.getValue(), primitive.getData().get(entry.getKey()), 1e-9);
+	}
+    }
+
+    @Test
+    public void testGeneratedOnce()
+    {
+	AtomicInteger generated = new AtomicInteger();
+	// In order, in reverse order and grouped by date but not in order
+	int[][] orders = { { 1, 1, 2, 5, 5, 5 }, { 5, 5, 5, 2, 1, 1 }, { 2, 5, 5, 5, 1, 1 } };
+	for (int[] days : orders)
+	{
+	    // Counts the generations by their first value
+	    DataSource source = pushedBuilder(days, (index) ->
+	    {
+		if (index == 0) generated.incrementAndGet();
+		return (double) index;
+	    }).setDataReducer((date, values) -> values.get(0)).build();
+
+	    Map<LocalDate, Double> expected = new TreeMap<>();
+	    for (int i = 0; i < days.length; i++)
+		expected.putIfAbsent(LocalDate.ofEpochDay(days[i]), (double) i);
+	    assertEquals(expected, source.getData());
+	}
+	assertEquals(orders.length, generated.get());
+    }
+
+    @Test
+    public void testDefaultReducer()
+    {
+	double[] values = { 0.1, 0.2, 0.3, -0d };
+	int[] days = { 1, 1, 1, 2 };
+
+	DataSource source = pushedBuilder(days, (index) -> values[index]).build();
+	assertEquals(pushedBuilder(days, (index) -> values[index]).setDataReducer(DataSourceBuilder.REDUCER_SUM).build().getData(), source.getData());
+	assertEquals(Double.valueOf(0.1 + 0.2 + 0.3), source.getData().get(LocalDate.ofEpochDay(1)));
+	assertEquals(Double.valueOf(-0d), source.getData().get(LocalDate.ofEpochDay(2)));
+    }
+
+    @Test
+    public void testNotGrouped()
+    {
+	for (boolean parallelBuild : new boolean[] { false, true })
+	{
+	    try
+	    {
+		pushedBuilder(new int[] { 5, 1, 5 }).setParallel(parallelBuild).build();
+		fail("Values of a date were reduced apart");
+	    }
+	    catch (DataSourceBuilderException exception)
+	    {
+
+	    }
+	}
+    }
+
+    @Test
+    public void testEmptyDates()
+    {
+	DataSourceBuilder builder = new DataSourceBuilder()
+	{
+	    {
+		setName("Name");
+		setUnit("Unit");
+		setDataReducer((date, values) -> (double) values.size());
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		Map<LocalDate, List<Double>> data = new TreeMap<>();
+		data.put(LocalDate.ofEpochDay(1), Arrays.asList(1d, 2d));
+		data.put(LocalDate.ofEpochDay(2), new ArrayList<>());
+		return data;
+	    }
+	};
+
+	Map<LocalDate, Double> expected = new TreeMap<>();
+	expected.put(LocalDate.ofEpochDay(1), 2d);
+	expected.put(LocalDate.ofEpochDay(2), 0d);
+	assertEquals(expected, builder.build().getData());
+	assertEquals(expected, builder.setParallel(true).build().getData());
+    }
+
+    @Test
+    public void testEpochDayFilter()
+    {
+	DataSource source = pushedBuilder(new int[] { 1, 1, 2, 5, 5, 5 })
+		.setDataFilter((date, value) -> true)
+		.setEpochDayFilter((day, value) -> day == 2 || value > 10)
+		.build();
+
+	Map<LocalDate, Double> expected = new TreeMap<>();
+	expected.put(LocalDate.ofEpochDay(1), 1d);
+	assertEquals(expected, source.getData());
+    }
+
+    @Test
+    public void testNullDays()
+    {
+	BiFunction<LocalDate, List<Double>, Double> reducer = (date, values) -> date.toEpochDay() == 2 ? null : values.get(0);
+
+	Map<LocalDate, Double> expected = new TreeMap<>();
+	expected.put(LocalDate.ofEpochDay(1), 0d);
+	expected.put(LocalDate.ofEpochDay(2), null);
+	expected.put(LocalDate.ofEpochDay(3), 2d);
+
+	DataSource source = pushedBuilder(new int[] { 1, 2, 3 }).setDataReducer(reducer).build();
+	assertEquals(expected, source.getData());
+	assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(source.getData().keySet()));
+	assertEquals(2, source.getSummary().getCount());
+	assertTrue(((ColumnarDataSource) source).isNull(1));
+	assertTrue(Double.isNaN(((ColumnarDataSource) source).getValue(1)));
+
+	DataSource parallel = pushedBuilder(new int[] { 1, 2, 3 }).setDataReducer(reducer).setParallel(true).build();
+	assertEquals(expected, parallel.getData());
+
+	expected.remove(LocalDate.ofEpochDay(2));
+	DataSource filtered = pushedBuilder(new int[] { 1, 2, 3 }).setDataReducer(reducer).setDataFilter((date, value) -> value == null).build();
+	assertEquals(expected, filtered.getData());
+    }
+
+    @Test(expected = DataSourceBuilderException.class)
+    public void testMissingMergeReducer()
+    {
+	pushedBuilder(new int[] { 1 }).setDataReducer((MergeType) null).build();
+    }
+
+    @Test
+    public void testParallel()
+    {
+	// Runs of values of random dates, in random order
+	List<Integer> dates = IntStream.range(-1000, 9000).boxed().collect(Collectors.toList());
+	Random random = new Random(1);
+	Collections.shuffle(dates, random);
+
+	int[] days = new int[100000];
+	for (int i = 0, run = 0; i < days.length; run++)
+	    for (int length = 1 + random.nextInt(40); length > 0 && i < days.length; length--)
+		days[i++] = dates.get(run);
+
+	// The first value of each date, which only matches if the order of the
+	// values is kept
+	BiFunction<LocalDate, List<Double>, Double> first = (date, values) -> values.get(0);
+	assertEquals(
+		pushedBuilder(days).setDataReducer(first).build().getData(),
+		pushedBuilder(days).setDataReducer(first).setParallel(true).build().getData());
+
+	DataSource sequential = pushedBuilder(days).setDataReducer(MergeType.MEDIAN).setEpochDayFilter((day, value) -> day % 3 == 0).build();
+	DataSource parallel = pushedBuilder(days).setDataReducer(MergeType.MEDIAN).setEpochDayFilter((day, value) -> day % 3 == 0).setParallel(true).build();
+	assertEquals(sequential.getData(), parallel.getData());
+	assertEquals(new ArrayList<>(sequential.getData().keySet()), new ArrayList<>(parallel.getData().keySet()));
+
+	assertTrue(pushedBuilder(new int[0]).setParallel(true).build().getData().isEmpty());
+    }
+
+    @Test
+    public void testParallelNulls()
+    {
+	int[] days = new int[20000];
+	for (int i = 0; i < days.length; i++)
+	    days[i] = i / 4;
+	IntFunction<Double> pushed = (index) -> index % 3 == 0 ? null : (double) index;
+
+	// Counts the null values of each date
+	BiFunction<LocalDate, List<Double>, Double> nulls = (date, values) -> (double) values.stream().filter((value) -> value == null).count();
+	DataSource sequential = pushedBuilder(days, pushed).setDataReducer(nulls).build();
+	DataSource parallel = pushedBuilder(days, pushed).setDataReducer(nulls).setParallel(true).build();
+	assertEquals(sequential.getData(), parallel.getData());
+	assertEquals(days.length / 3 + 1, sequential.getSummary().getSum(), 0);
+
+	for (boolean parallelBuild : new boolean[] { false, true })
+	{
+	    try
+	    {
+		pushedBuilder(days, pushed).setDataReducer(MergeType.SUM).setParallel(parallelBuild).build();
+		fail("Null values were summed");
+	    }
+	    catch (DataSourceBuilderException exception)
+	    {
+
+	    }
+	}
+    }
+
+    @Test(expected = DataSourceBuilderException.class)
+    public void testParallelFailure()
+    {
+	int[] days = new int[100000];
+	for (int i = 0; i < days.length; i++)
+	    days[i] = i;
+
+	pushedBuilder(days).setDataReducer((date, values) ->
+	{
+	    if (date.toEpochDay() == 50000) throw new IllegalStateException();
+	    return values.get(0);
+	}).setParallel(true).build();
+    }
+
+    @Test
+    public void testLazy() throws InterruptedException
+    {
+	AtomicInteger generated = new AtomicInteger();
+	DataSourceBuilder builder = new DataSourceBuilder()
+	{
+	    {
+		setName("Name");
+		setUnit("Unit");
+		setSourceName("Source");
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		generated.incrementAndGet();
+		Map<LocalDate, List<Double>> data = new TreeMap<>();
+		data.put(LocalDate.ofEpochDay(1), Arrays.asList(1d, 2d));
+		return data;
+	    }
+	};
+
+	DataSource source = builder.buildLazy();
+	assertEquals("Name", source.getName());
+	assertEquals("Unit", source.getUnit());
+	assertEquals("Source", source.getSourceName());
+	assertEquals(0, generated.get());
+
+	Thread[] threads = new Thread[8];
+	for (int i = 0; i < threads.length; i++)
+	{
+	    threads[i] = new Thread(() -> source.getData());
+	    threads[i].start();
+	}
+	for (Thread thread : threads)
+	    thread.join();
+
+	assertEquals(1, generated.get());
+	assertEquals(3, source.getData().get(LocalDate.ofEpochDay(1)), 0);
+	assertEquals(1, source.getSummary().getCount());
+	assertEquals(1, generated.get());
+    }
+
+    @Test(expected = DataSourceBuilderException.class)
+    public void testLazyMissingReducer()
+    {
+	pushedBuilder(new int[0]).setDataReducer((MergeType) null).buildLazy();
+    }
+
+    @Test
+    public void testLazyFailure()
+    {
+	DataSource source = new DataSourceBuilder()
+	{
+	    {
+		setName("Name");
+		setUnit("Unit");
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		return null;
+	    }
+	}.buildLazy();
+
+	assertEquals("Name", source.getName());
+	try
+	{
+	    source.getData();
+	    fail("Missing data was loaded");
+	}
+	catch (DataSourceBuilderException exception)
+	{
+
+	}
+    }
+
+    @Test
+    public void testPrimitiveAllocation()
+    {
+	// Compares the bytes allocated by the boxed and the primitive paths of
+	// the build loop, where the JVM can tell
+	Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+	int[] days = new int[200000];
+	for (int i = 0; i < days.length; i++)
+	    days[i] = i / 4;
+
+	long boxed = Long.MAX_VALUE;
+	long primitive = Long.MAX_VALUE;
+	for (int round = 0; round < 3; round++)
+	{
+	    long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	    pushedBuilder(days).setDataReducer(DataSourceBuilder.REDUCER_SUM).setDataFilter((date, value) -> value < 0).build();
+	    long middle = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	    pushedBuilder(days).setDataReducer(MergeType.SUM).setEpochDayFilter((day, value) -> value < 0).build();
+	    long end = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+	    boxed = Math.min(boxed, middle - start);
+	    primitive = Math.min(primitive, end - middle);
+	}
+	assertTrue("Primitive path allocated " + primitive + " bytes, boxed path " + boxed, primitive < boxed);
+
+	// With values that are already boxed, the primitive path only
+	// allocates for the dates, far less than boxing each value again
+	for (int i = 0; i < days.length; i++)
+	    days[i] = i / 32;
+	Double[] values = new Double[days.length];
+	for (int i = 0; i < days.length; i++)
+	    values[i] = (double) i;
+	DataSourceBuilder builder = pushedBuilder(days, (index) -> values[index]).setDataReducer(MergeType.SUM).setEpochDayFilter((day, value) -> value < 0);
+
+	long allocated = Long.MAX_VALUE;
+	for (int round = 0; round < 3; round++)
+	{
+	    long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	    builder.build();
+	    allocated = Math.min(allocated, threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start);
+	}
+	assertTrue("Primitive path allocated " + allocated + " bytes for " + days.length + " values", allocated < days.length * 4L);
+    }
 }
@@ -0,0 +1,100 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestDataSourceRegistry
+{
+    private static final AtomicInteger builds = new AtomicInteger();
+
+    private static class StationBuilder extends DataSourceBuilder
+    {
+	private final String station;
+
+	private StationBuilder(String station)
+	{
+	    this.station = station;
+	    setName(station);
+	    setUnit("Unit");
+	}
+
+	@Override
+	protected Object getConfiguration()
+	{
+	    return station;
+	}
+
+	@Override
+	protected Map<LocalDate, List<Double>> generateData()
+	{
+	    builds.incrementAndGet();
+	    Map<LocalDate, List<Double>> data = new TreeMap<>();
+	    data.put(LocalDate.ofEpochDay(station.length()), Arrays.asList(1d));
+	    return data;
+	}
+    }
+
+    private static DataSource getSource(String name)
+    {
+	return new StationBuilder(name).build();
+    }
+
+    @Test
+    public void testGet()
+    {
+	DataSourceRegistry registry = new DataSourceRegistry();
+	DataSource first = registry.get("a", () -> getSource("a"));
+	DataSource second = registry.get("a", () -> getSource("a"));
+	DataSource other = registry.get("b", () -> getSource("b"));
+
+	assertSame(first, second);
+	assertNotSame(first, other);
+	assertSame(first, registry.lookup("a"));
+	assertNull(registry.lookup("c"));
+	assertEquals(2, registry.size());
+
+	assertSame(first, registry.register("a", getSource("a")));
+	registry.clear();
+	assertEquals(0, registry.size());
+	assertNotSame(first, registry.get("a", () -> getSource("a")));
+    }
+
+    @Test
+    public void testBuildShared()
+    {
+	int before = builds.get();
+	DataSource first = new StationBuilder("Shared station").buildShared();
+	DataSource second = new StationBuilder("Shared station").buildShared();
+	assertSame(first, second);
+	assertEquals(before + 1, builds.get());
+
+	assertNotSame(first, new StationBuilder("Shared station").setDataReducer(MergeType.MAX).buildShared());
+	assertNotSame(first, new StationBuilder("Other station").buildShared());
+	assertNotSame(first, new StationBuilder("Shared station").build());
+    }
+
+    @Test
+    public void testWeak()
+    {
+	DataSourceRegistry registry = new DataSourceRegistry();
+	WeakReference<DataSource> reference = new WeakReference<>(registry.get("a", () -> getSource("a")));
+
+	for (int i = 0; i < 20 && reference.get() != null; i++)
+	    System.gc();
+	Assume.assumeTrue(reference.get() == null);
+
+	assertEquals(0, registry.size());
+	assertNull(registry.lookup("a"));
+    }
+}
@@ -0,0 +1,150 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestDataSummary
+{
+    private static DataSourceBuilder getBuilder(int days)
+    {
+	return new DataSourceBuilder()
+	{
+	    {
+		setName("Name");
+		setUnit("Unit");
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		Map<LocalDate, List<Double>> data = new TreeMap<>();
+		for (int day = 0; day < days; day++)
+		{
+		    List<Double> values = new ArrayList<>();
+		    values.add((double) (day % 10));
+		    values.add(1d);
+		    data.put(LocalDate.ofEpochDay(day + 100), values);
+		}
+		return data;
+	    }
+	};
+    }
+
+    private static void assertSummary(DataSummary expected, DataSummary actual)
+    {
+	assertEquals(expected.getCount(), actual.getCount());
+	assertEquals(expected.getMin(), actual.getMin(), 0);
+	assertEquals(expected.getMax(), actual.getMax(), 0);
+	assertEquals(expected.getMean(), actual.getMean(), 1e-9);
+	assertEquals(expected.getFirstDate(), actual.getFirstDate());
+	assertEquals(expected.getLastDate(), actual.getLastDate());
+    }
+
+    @Test
+    public void testBuilt()
+    {
+	DataSummary summary = getBuilder(20).build().getSummary();
+	assertEquals(20, summary.getCount());
+	assertEquals(1, summary.getMin(), 0);
+	assertEquals(10, summary.getMax(), 0);
+	assertEquals(5.5, summary.getMean(), 0);
+	assertEquals(LocalDate.ofEpochDay(100), summary.getFirstDate());
+	assertEquals(LocalDate.ofEpochDay(119), summary.getLastDate());
+    }
+
+    @Test
+    public void testFiltered()
+    {
+	DataSummary summary = getBuilder(20).setEpochDayFilter((day, value) -> value > 5).build().getSummary();
+	assertEquals(10, summary.getCount());
+	assertEquals(5, summary.getMax(), 0);
+	assertEquals(3, summary.getMean(), 0);
+    }
+
+    @Test
+    public void testScanned()
+    {
+	DataSource source = getBuilder(50000).build();
+	DataSummary scanned = DataSummary.of(ColumnarDataSource.of(source.getName(), source.getUnit(), null, null, new TreeMap<>(source.getData())));
+	assertSummary(scanned, source.getSummary());
+	assertSummary(scanned, getBuilder(50000).setParallel(true).build().getSummary());
+    }
+
+    @Test
+    public void testFingerprint()
+    {
+	DataSource source = getBuilder(1000).build();
+	Map<LocalDate, Double> data = new HashMap<>(source.getData());
+	DataSource unsorted = new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return "Other name";
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "Other unit";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return data;
+	    }
+	};
+
+	assertEquals(source.getFingerprint(), unsorted.getFingerprint());
+	assertEquals(source.getFingerprint(), getBuilder(1000).setParallel(true).build().getFingerprint());
+
+	data.put(LocalDate.ofEpochDay(100), 5d);
+	assertNotEquals(source.getFingerprint(), unsorted.getFingerprint());
+	assertNotEquals(source.getFingerprint(), getBuilder(999).build().getFingerprint());
+	assertNotEquals(getBuilder(0).build().getFingerprint(), getBuilder(1).build().getFingerprint());
+    }
+
+    @Test
+    public void testVersion()
+    {
+	DataSourceBuilder builder = getBuilder(10);
+	DataSource first = builder.build();
+	DataSource second = builder.build();
+	assertTrue(first.getVersion() > 0);
+	assertTrue(second.getVersion() > first.getVersion());
+	assertEquals(first.getFingerprint(), second.getFingerprint());
+	assertEquals(0, DataSummary.EMPTY.getCount());
+    }
+
+    @Test
+    public void testEmpty()
+    {
+	DataSummary summary = getBuilder(0).build().getSummary();
+	assertTrue(summary.isEmpty());
+	assertTrue(Double.isNaN(summary.getMean()));
+	assertNull(summary.getFirstDate());
+	assertFalse(summary.overlaps(getBuilder(10).build().getSummary(), Resolution.YEAR));
+    }
+
+    @Test
+    public void testOverlaps()
+    {
+	DataSummary first = ColumnarDataSource.of("A", "A", null, null, new int[] { 0, 10 }, new double[] { 1, 1 }).getSummary();
+	DataSummary second = ColumnarDataSource.of("B", "B", null, null, new int[] { 20 }, new double[] { 1 }).getSummary();
+
+	assertFalse(first.overlaps(second, Resolution.DAY));
+	assertFalse(second.overlaps(first, Resolution.WEEK));
+	assertTrue(first.overlaps(second, Resolution.MONTH));
+	assertTrue(first.overlaps(first, Resolution.DAY));
+    }
+}
@@ -0,0 +1,107 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+@SuppressWarnings("javadoc")
+public class TestKernels
+{
+    private static double[] getValues(int count)
+    {
+	Random random = new Random(count);
+	double[] values = new double[count];
+	for (int i = 0; i < count; i++)
+	    values[i] = random.nextDouble() * 200 - 100;
+	return values;
+    }
+
+    @Test
+    public void testSlices()
+    {
+	double[] values = getValues(40);
+	for (int from = 0; from < 6; from++)
+	    for (int to = from; to <= values.length; to++)
+	    {
+		double sum = 0;
+		double squares = 0;
+		double dot = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++)
+		{
+		    sum += values[i];
+		    squares += (values[i] - 3) * (values[i] - 3);
+		    dot += values[i] * values[values.length - 1 - i];
+		    min = Math.min(min, values[i]);
+		    max = Math.max(max, values[i]);
+		}
+
+		assertEquals(sum, Kernels.sum(values, from, to), 1e-9);
+		assertEquals(squares, Kernels.sumOfSquares(values, from, to, 3), 1e-9);
+		assertEquals(min, Kernels.min(values, from, to), 0);
+		assertEquals(max, Kernels.max(values, from, to), 0);
+
+		double[] reversed = new double[values.length];
+		for (int i = 0; i < values.length; i++)
+		    reversed[i] = values[values.length - 1 - i];
+		assertEquals(dot, Kernels.dot(values, from, reversed, from, to - from), 1e-9);
+	    }
+    }
+
+    @Test
+    public void testCompensation()
+    {
+	double[] values = new double[10001];
+	Arrays.fill(values, 0.1);
+	values[0] = 1e8;
+	assertEquals(1e8 + 1000, Kernels.sum(values, 0, values.length), 1e-6);
+	assertEquals(1e8 + 1000, MergeType.SUM.merge(values, 0, values.length), 1e-6);
+    }
+
+    @Test
+    public void testInfinite()
+    {
+	double[] values = { 1, Double.POSITIVE_INFINITY, 2, 3, 4 };
+	assertEquals(Double.POSITIVE_INFINITY, Kernels.sum(values, 0, values.length), 0);
+	assertEquals(Double.POSITIVE_INFINITY, MergeType.SUM.merge(values, 0, values.length), 0);
+    }
+
+    @Test
+    public void testAccumulators()
+    {
+	double[] values = getValues(1001);
+	MergeType[] mergeTypes = {
+		MergeType.SUM,
+		MergeType.AVERAGE,
+		MergeType.MIN,
+		MergeType.MAX,
+		MergeType.STANDARD_DEVIATION,
+		MergeType.SAMPLE_STANDARD_DEVIATION };
+
+	for (MergeType mergeType : mergeTypes)
+	{
+	    Accumulator one = mergeType.createAccumulator();
+	    for (double value : values)
+		one.accept(value);
+
+	    Accumulator slices = mergeType.createAccumulator();
+	    slices.acceptAll(values, 0, 0);
+	    slices.acceptAll(values, 0, 333);
+	    slices.acceptAll(values, 333, values.length);
+
+	    assertEquals(one.finish(), slices.finish(), 1e-9);
+	}
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+	Kernels.sum(new double[4], 2, 5);
+    }
+}
@@ -0,0 +1,180 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestMatchResultCache
+{
+    private static DataSource getDataSource(String name)
+    {
+	return getDataSource(name, 0);
+    }
+
+    private static DataSource getDataSource(String name, int offset)
+    {
+	HashMap<LocalDate, Double> data = new HashMap<>();
+	for (int day = 0; day < 100; day++)
+	    data.put(LocalDate.ofEpochDay(day), (double) ((day + offset) % 7));
+
+	return new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return name;
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "[" + name + ":unit]";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return Collections.unmodifiableMap(data);
+	    }
+	};
+    }
+
+    @Test
+    public void testHitsAcrossBuilders()
+    {
+	MatchResultCache cache = new MatchResultCache(8);
+	DataSource a = getDataSource("A");
+	DataSource b = getDataSource("B");
+
+	Map<String, MatchedDataPair> first = new DataCollectionBuilder(a, b, Resolution.WEEK)
+		.setMatchCache(cache)
+		.getResult()
+		.getData();
+	assertEquals(0, cache.getHitCount());
+	assertEquals(1, cache.getMissCount());
+
+	Map<String, MatchedDataPair> second = new DataCollectionBuilder(a, b, Resolution.WEEK)
+		.setMatchCache(cache)
+		.setTitle("Other title")
+		.getResult()
+		.getData();
+	assertEquals(1, cache.getHitCount());
+	assertEquals(1, cache.getMissCount());
+	assertEquals(first, second);
+
+	new DataCollectionBuilder(a, b, Resolution.WEEK)
+		.setMatchCache(cache)
+		.setYMergeType(MergeType.AVERAGE)
+		.getResult();
+	new DataCollectionBuilder(a, b, Resolution.MONTH)
+		.setMatchCache(cache)
+		.getResult();
+	new DataCollectionBuilder(a, getDataSource("B", 1), Resolution.WEEK)
+		.setMatchCache(cache)
+		.getResult();
+	assertEquals(1, cache.getHitCount());
+	assertEquals(4, cache.getMissCount());
+	assertEquals(4, cache.size());
+
+	// Other sources with the same data share the result
+	new DataCollectionBuilder(getDataSource("C"), getDataSource("D"), Resolution.WEEK)
+		.setMatchCache(cache)
+		.getResult();
+	assertEquals(2, cache.getHitCount());
+	assertEquals(4, cache.getMissCount());
+
+	cache.clear();
+	assertEquals(0, cache.size());
+	assertEquals(0, cache.getHitCount());
+	assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction()
+    {
+	MatchResultCache cache = new MatchResultCache(2);
+	DataSource a = getDataSource("A");
+	DataSource b = getDataSource("B");
+
+	new DataCollectionBuilder(a, b, Resolution.DAY).setMatchCache(cache).getResult();
+	new DataCollectionBuilder(a, b, Resolution.WEEK).setMatchCache(cache).getResult();
+	// Use DAY again, so WEEK becomes the least recently used
+	new DataCollectionBuilder(a, b, Resolution.DAY).setMatchCache(cache).getResult();
+	new DataCollectionBuilder(a, b, Resolution.MONTH).setMatchCache(cache).getResult();
+	assertEquals(2, cache.size());
+	assertEquals(1, cache.getHitCount());
+	assertEquals(3, cache.getMissCount());
+
+	new DataCollectionBuilder(a, b, Resolution.DAY).setMatchCache(cache).getResult();
+	assertEquals(2, cache.getHitCount());
+	new DataCollectionBuilder(a, b, Resolution.WEEK).setMatchCache(cache).getResult();
+	assertEquals(4, cache.getMissCount());
+
+	cache.setCapacity(1);
+	assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testResultsAreReadOnly()
+    {
+	MatchResultCache cache = new MatchResultCache(8);
+	DataSource a = getDataSource("A");
+	DataSource b = getDataSource("B");
+
+	DataCollectionBuilder builder = new DataCollectionBuilder(a, b, Resolution.DAY).setMatchCache(cache);
+	Map<String, MatchedDataPair> first = builder.getResult().getData();
+	try
+	{
+	    first.clear();
+	    fail("Result could be changed");
+	}
+	catch (UnsupportedOperationException exception)
+	{
+
+	}
+
+	Map<String, MatchedDataPair> second = new DataCollectionBuilder(a, b, Resolution.DAY)
+		.setMatchCache(cache)
+		.getResult()
+		.getData();
+	assertEquals(100, second.size());
+    }
+
+    @Test
+    public void testNoCache()
+    {
+	DataSource a = getDataSource("A");
+	DataSource b = getDataSource("B");
+
+	long misses = MatchResultCache.getShared().getMissCount();
+	int size = MatchResultCache.getShared().size();
+	new DataCollectionBuilder(a, b, Resolution.DAY).getResult();
+	new DataCollectionBuilder(a, b, Resolution.DAY).setMatchCache(null).getResult();
+	assertEquals(misses, MatchResultCache.getShared().getMissCount());
+	assertEquals(size, MatchResultCache.getShared().size());
+    }
+
+    @Test
+    public void testShared()
+    {
+	DataSource a = getDataSource("A", 3);
+	DataSource b = getDataSource("B", 5);
+
+	long hits = MatchResultCache.getShared().getHitCount();
+	new DataCollectionBuilder(a, b, Resolution.YEAR).setMatchCache(MatchResultCache.getShared()).getResult();
+	new DataCollectionBuilder(a, b, Resolution.YEAR).setMatchCache(MatchResultCache.getShared()).getResult();
+	assertEquals(hits + 1, MatchResultCache.getShared().getHitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCapacity()
+    {
+	new MatchResultCache(-1);
+    }
+}
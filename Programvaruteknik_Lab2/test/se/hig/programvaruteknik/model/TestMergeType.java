@@ -0,0 +1,169 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+@SuppressWarnings("javadoc")
+public class TestMergeType
+{
+    private static final List<Double> values = Arrays.asList(3d, 1d, 4d, 1d, 5d, 9d, 2d, 6d);
+
+    private static Double accumulate(MergeType mergeType, List<Double> data)
+    {
+	Accumulator accumulator = mergeType.createAccumulator();
+	for (Double value : data)
+	    accumulator.accept(value);
+	return accumulator.finish();
+    }
+
+    private static Double combine(MergeType mergeType, List<Double> data, int split)
+    {
+	Accumulator left = mergeType.createAccumulator();
+	Accumulator right = mergeType.createAccumulator();
+	for (Double value : data.subList(0, split))
+	    left.accept(value);
+	for (Double value : data.subList(split, data.size()))
+	    right.accept(value);
+	left.combine(right);
+	return left.finish();
+    }
+
+    @Test
+    public void testSum()
+    {
+	assertEquals(31d, MergeType.SUM.merge(values), 0);
+	assertEquals(31d, accumulate(MergeType.SUM, values), 0);
+	assertEquals(31d, combine(MergeType.SUM, values, 3), 0);
+	assertEquals(0d, MergeType.SUM.merge(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testSumCompensation()
+    {
+	Accumulator accumulator = MergeType.SUM.createAccumulator();
+	for (int i = 0; i < 10000; i++)
+	    accumulator.accept(0.1);
+	assertEquals(1000d, accumulator.finish(), 1e-12);
+    }
+
+    @Test
+    public void testAverage()
+    {
+	assertEquals(31d / 8, MergeType.AVERAGE.merge(values), 0);
+	assertEquals(31d / 8, accumulate(MergeType.AVERAGE, values), 0);
+	assertEquals(31d / 8, combine(MergeType.AVERAGE, values, 5), 0);
+	assertEquals(0d, MergeType.AVERAGE.merge(Collections.emptyList()), 0);
+    }
+
+    private static Double mergeSlice(MergeType mergeType, List<Double> data)
+    {
+	double[] array = new double[data.size() + 2];
+	for (int i = 0; i < data.size(); i++)
+	    array[i + 1] = data.get(i);
+	array[0] = Double.NaN;
+	array[array.length - 1] = Double.NaN;
+
+	double[] copy = array.clone();
+	Double merged = mergeType.merge(array, 1, array.length - 1);
+	assertArrayEquals("Slice was changed", copy, array, 0);
+	return merged;
+    }
+
+    @Test
+    public void testMedian()
+    {
+	assertEquals(3.5, MergeType.MEDIAN.merge(values), 0);
+	assertEquals(3.5, accumulate(MergeType.MEDIAN, values), 0);
+	assertEquals(3.5, combine(MergeType.MEDIAN, values, 2), 0);
+	assertEquals(3.5, mergeSlice(MergeType.MEDIAN, values), 0);
+	assertEquals(3d, MergeType.MEDIAN.merge(values.subList(0, 7)), 0);
+	assertEquals(0d, MergeType.MEDIAN.merge(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testSelect()
+    {
+	Random random = new Random(42);
+	for (int size = 1; size < 200; size += 7)
+	{
+	    double[] data = new double[size];
+	    for (int i = 0; i < size; i++)
+		data[i] = random.nextInt(size / 3 + 1);
+
+	    double[] sorted = data.clone();
+	    Arrays.sort(sorted);
+	    for (int index = 0; index < size; index++)
+		assertEquals(sorted[index], Accumulators.select(data.clone(), 0, size, index), 0);
+	}
+
+	double[] equal = new double[100000];
+	Arrays.fill(equal, 7);
+	assertEquals(7d, Accumulators.select(equal, 0, equal.length, equal.length / 2), 0);
+    }
+
+    @Test
+    public void testMinMaxCount()
+    {
+	assertEquals(1d, MergeType.MIN.merge(values), 0);
+	assertEquals(1d, combine(MergeType.MIN, values, 5), 0);
+	assertEquals(1d, mergeSlice(MergeType.MIN, values), 0);
+	assertEquals(-5d, MergeType.MIN.merge(Arrays.asList(-5d)), 0);
+
+	assertEquals(9d, MergeType.MAX.merge(values), 0);
+	assertEquals(9d, combine(MergeType.MAX, values, 5), 0);
+	assertEquals(9d, mergeSlice(MergeType.MAX, values), 0);
+	assertEquals(-5d, MergeType.MAX.merge(Arrays.asList(-5d)), 0);
+
+	assertEquals(8d, MergeType.COUNT.merge(values), 0);
+	assertEquals(8d, combine(MergeType.COUNT, values, 5), 0);
+	assertEquals(8d, mergeSlice(MergeType.COUNT, values), 0);
+
+	assertEquals(0d, MergeType.MIN.merge(Collections.emptyList()), 0);
+	assertEquals(0d, MergeType.MAX.merge(Collections.emptyList()), 0);
+	assertEquals(0d, MergeType.COUNT.merge(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testStandardDeviation()
+    {
+	// Mean 3.875, sum of squared deviations 52.875
+	assertEquals(Math.sqrt(52.875 / 8), MergeType.STANDARD_DEVIATION.merge(values), 1e-12);
+	assertEquals(Math.sqrt(52.875 / 8), combine(MergeType.STANDARD_DEVIATION, values, 3), 1e-12);
+	assertEquals(Math.sqrt(52.875 / 8), combine(MergeType.STANDARD_DEVIATION, values, 0), 1e-12);
+	assertEquals(Math.sqrt(52.875 / 8), mergeSlice(MergeType.STANDARD_DEVIATION, values), 1e-12);
+
+	assertEquals(Math.sqrt(52.875 / 7), MergeType.SAMPLE_STANDARD_DEVIATION.merge(values), 1e-12);
+	assertEquals(Math.sqrt(52.875 / 7), combine(MergeType.SAMPLE_STANDARD_DEVIATION, values, 6), 1e-12);
+
+	assertEquals(0d, MergeType.STANDARD_DEVIATION.merge(Arrays.asList(5d)), 0);
+	assertEquals(0d, MergeType.SAMPLE_STANDARD_DEVIATION.merge(Arrays.asList(5d)), 0);
+	assertEquals(0d, MergeType.STANDARD_DEVIATION.merge(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testStandardDeviationStability()
+    {
+	// A large offset makes the naive sum of squares lose all precision
+	Accumulator accumulator = MergeType.STANDARD_DEVIATION.createAccumulator();
+	for (int i = 0; i < 1000; i++)
+	    accumulator.accept(1e9 + (i % 2 == 0 ? -1 : 1));
+	assertEquals(1d, accumulator.finish(), 1e-6);
+    }
+
+    @Test
+    public void testLambda()
+    {
+	MergeType max = (list) -> list.stream().mapToDouble((value) -> value).max().orElse(0);
+	assertEquals(9d, accumulate(max, values), 0);
+	assertEquals(9d, combine(max, values, 4), 0);
+	assertEquals(9d, mergeSlice(max, values), 0);
+    }
+}
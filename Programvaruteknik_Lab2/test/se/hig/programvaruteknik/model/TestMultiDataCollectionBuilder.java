@@ -0,0 +1,148 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.owlike.genson.Genson;
+
+@SuppressWarnings("javadoc")
+public class TestMultiDataCollectionBuilder
+{
+    private static DataSource getDataSource(String name, int firstDay, int lastDay, double value)
+    {
+	HashMap<LocalDate, Double> data = new HashMap<>();
+	for (int day = firstDay; day <= lastDay; day++)
+	    data.put(LocalDate.ofEpochDay(day), value * (day % 5));
+
+	return new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return name;
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "[" + name + ":unit]";
+	    }
+
+	    @Override
+	    public String getSourceName()
+	    {
+		return "[" + name + ":source_name]";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return Collections.unmodifiableMap(data);
+	    }
+	};
+    }
+
+    @Test
+    public void testMatchesPairs()
+    {
+	DataSource a = getDataSource("A", 16000, 16400, 1);
+	DataSource b = getDataSource("B", 16100, 16500, 2);
+	DataSource c = getDataSource("C", 16050, 16300, 3);
+
+	for (Resolution resolution : Resolution.values())
+	{
+	    MultiDataCollection collection = new MultiDataCollectionBuilder(resolution)
+		    .addDatasource(a, MergeType.SUM)
+		    .addDatasource(b, MergeType.AVERAGE)
+		    .addDatasource(c, MergeType.MEDIAN)
+		    .getResult();
+
+	    Map<String, MatchedDataPair> ab = new DataCollectionBuilder(a, b, resolution)
+		    .setXMergeType(MergeType.SUM)
+		    .setYMergeType(MergeType.AVERAGE)
+		    .getResult()
+		    .getData();
+	    Map<String, MatchedDataPair> ac = new DataCollectionBuilder(a, c, resolution)
+		    .setYMergeType(MergeType.MEDIAN)
+		    .getResult()
+		    .getData();
+
+	    int expectedSize = 0;
+	    for (Entry<String, MatchedDataPair> entry : ab.entrySet())
+	    {
+		if (!ac.containsKey(entry.getKey())) continue;
+		expectedSize++;
+
+		MatchedDataRow row = collection.getData().get(entry.getKey());
+		assertNotNull("Missing key", row);
+		assertEquals(3, row.size());
+		assertEquals(entry.getValue().getXValue(), row.getValue(0));
+		assertEquals(entry.getValue().getYValue(), row.getValue(1));
+		assertEquals(ac.get(entry.getKey()).getYValue(), row.getValue(2));
+	    }
+	    assertEquals(expectedSize, collection.getData().size());
+	}
+    }
+
+    @Test
+    public void testTitle()
+    {
+	MultiDataCollectionBuilder builder = new MultiDataCollectionBuilder(Resolution.DAY)
+		.addDatasource(getDataSource("A", 0, 1, 1))
+		.addDatasource(getDataSource("B", 0, 1, 1))
+		.addDatasource(getDataSource("C", 0, 1, 1));
+	assertEquals("A : B : C", builder.getResult().getTitle());
+
+	builder.setTitle("Test New Title");
+	assertEquals("Test New Title", builder.getResult().getTitle());
+    }
+
+    @Test
+    public void testColumnName()
+    {
+	assertEquals("a", MultiDataCollection.getColumnName(0));
+	assertEquals("c", MultiDataCollection.getColumnName(2));
+	assertEquals("z", MultiDataCollection.getColumnName(25));
+	assertEquals("aa", MultiDataCollection.getColumnName(26));
+	assertEquals("ba", MultiDataCollection.getColumnName(52));
+    }
+
+    @Test
+    public void testJSON()
+    {
+	MultiDataCollection collection = new MultiDataCollectionBuilder(Resolution.DAY)
+		.addDatasource(getDataSource("A", 1, 2, 1))
+		.addDatasource(getDataSource("B", 1, 2, 2))
+		.addDatasource(getDataSource("C", 2, 2, 3))
+		.setTitle("[title]")
+		.getResult();
+
+	@SuppressWarnings("unchecked")
+	Map<String, Object> data = (Map<String, Object>) new Genson()
+		.deserialize(collection.asJSON(null), Map.class)
+		.get("data");
+
+	assertEquals("[title]", data.get("name"));
+	assertEquals("[A:unit]", data.get("a_name"));
+	assertEquals("[B:source_name]", data.get("b_source_name"));
+	assertEquals("[C:unit]", data.get("c_name"));
+	assertNull(data.get("c_source_link"));
+
+	@SuppressWarnings("unchecked")
+	Map<String, Map<String, Double>> rows = (Map<String, Map<String, Double>>) data.get("data");
+	assertEquals(1, rows.size());
+
+	Map<String, Double> row = rows.get(Resolution.DAY.toKey(LocalDate.ofEpochDay(2)));
+	assertEquals(3, row.size());
+	assertEquals(2d, row.get("a"), 0);
+	assertEquals(4d, row.get("b"), 0);
+	assertEquals(6d, row.get("c"), 0);
+    }
+}
@@ -0,0 +1,122 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestOffHeapDataCollection
+{
+    private static DataSource getSource(String token, int offset)
+    {
+	return new DataSourceBuilder()
+	{
+	    {
+		setName(token);
+		setUnit(token + " unit");
+	    }
+
+	    @Override
+	    protected Map<LocalDate, List<Double>> generateData()
+	    {
+		Map<LocalDate, List<Double>> data = new TreeMap<>();
+		for (int day = 0; day < 1000; day++)
+		{
+		    List<Double> values = new ArrayList<>();
+		    values.add((double) (day * 7 + offset) % 13);
+		    data.put(LocalDate.ofEpochDay(day + offset), values);
+		}
+		return data;
+	    }
+	}.build();
+    }
+
+    private static void assertSameData(Map<String, MatchedDataPair> expected, Map<String, MatchedDataPair> actual)
+    {
+	assertEquals(expected.size(), actual.size());
+	assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+	for (Entry<String, MatchedDataPair> entry : expected.entrySet())
+	{
+	    MatchedDataPair pair = actual.get(entry.getKey());
+	    assertNotNull(pair);
+	    assertEquals(entry.getValue().getXValue(), pair.getXValue());
+	    assertEquals(entry.getValue().getYValue(), pair.getYValue());
+	}
+    }
+
+    @Test
+    public void testBuilder()
+    {
+	for (Resolution resolution : Resolution.values())
+	{
+	    DataCollectionBuilder builder = new DataCollectionBuilder(getSource("x", 0), getSource("y", 100), resolution)
+		    .setMatchCache(null);
+	    DataCollection expected = builder.getResult();
+	    try (OffHeapDataCollection actual = builder.setResolution(resolution).getOffHeapResult())
+	    {
+		assertSameData(expected.getData(), actual.getData());
+		assertEquals(expected.asJSON(), actual.asJSON());
+		assertEquals(expected.getXUnit(), actual.getXUnit());
+	    }
+	}
+    }
+
+    @Test
+    public void testLookups()
+    {
+	Map<String, MatchedDataPair> data = new LinkedHashMap<>();
+	data.put("b", new MatchedDataPair(1.0, null));
+	data.put("a", new MatchedDataPair(Double.NaN, 2.0));
+	data.put("år", new MatchedDataPair(3.0, 4.0));
+
+	try (OffHeapDataCollection collection = new OffHeapDataCollection("Title", getSource("x", 0), getSource("y", 0), data))
+	{
+	    assertSameData(data, collection.getData());
+	    assertNull(collection.getData().get("b").getYValue());
+	    assertTrue(collection.getData().get("a").getXValue().isNaN());
+	    assertFalse(collection.getData().containsKey("c"));
+	}
+    }
+
+    @Test
+    public void testEmpty()
+    {
+	try (OffHeapDataCollection collection = new OffHeapDataCollection("Title", getSource("x", 0), getSource("y", 0), new LinkedHashMap<>()))
+	{
+	    assertTrue(collection.getData().isEmpty());
+	    assertNull(collection.getData().get("a"));
+	}
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed()
+    {
+	OffHeapDataCollection collection = new DataCollectionBuilder(getSource("x", 0), getSource("y", 0), Resolution.DAY)
+		.getOffHeapResult();
+	collection.close();
+	collection.close();
+	assertTrue(collection.isClosed());
+	collection.getData().get("1970-01-01");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedIterator()
+    {
+	OffHeapDataCollection collection = new DataCollectionBuilder(getSource("x", 0), getSource("y", 0), Resolution.DAY)
+		.getOffHeapResult();
+	Iterator<Entry<String, MatchedDataPair>> iterator = collection.getData().entrySet().iterator();
+	iterator.next();
+	collection.close();
+	assertTrue(iterator.hasNext());
+	iterator.next();
+    }
+}
@@ -0,0 +1,214 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.hig.programvaruteknik.model.DataCollectionBuilder.MatchMode;
+import se.hig.programvaruteknik.model.MergeType.Accumulator;
+
+@SuppressWarnings("javadoc")
+public class TestQuantileSketch
+{
+    private static final double[] quantiles = { 0.5, 0.9, 0.99 };
+
+    private static double[] getValues(int count, long seed)
+    {
+	Random random = new Random(seed);
+	double[] values = new double[count];
+	for (int i = 0; i < count; i++)
+	    values[i] = random.nextGaussian() * 10 + 5;
+	return values;
+    }
+
+    /**
+     * How far the rank of the estimate is from the quantile, as a fraction of
+     * the values
+     */
+    private static double rankError(double[] sorted, double quantile, double estimate)
+    {
+	int below = 0;
+	while (below < sorted.length && sorted[below] < estimate)
+	    below++;
+	int atOrBelow = below;
+	while (atOrBelow < sorted.length && sorted[atOrBelow] <= estimate)
+	    atOrBelow++;
+
+	double low = (double) below / sorted.length;
+	double high = (double) atOrBelow / sorted.length;
+	if (quantile < low) return low - quantile;
+	if (quantile > high) return quantile - high;
+	return 0;
+    }
+
+    private static void assertAccurate(double[] values, double quantile, double estimate)
+    {
+	double[] sorted = values.clone();
+	Arrays.sort(sorted);
+	assertTrue("Estimate too far off for " + quantile, rankError(sorted, quantile, estimate) <= 0.02);
+    }
+
+    @Test
+    public void testExactWhenSmall()
+    {
+	double[] values = new double[99];
+	for (int i = 0; i < values.length; i++)
+	    values[values.length - 1 - i] = i + 1;
+
+	assertEquals(50d, MergeType.P50.merge(values, 0, values.length), 0);
+	assertEquals(90d, MergeType.P90.merge(values, 0, values.length), 0);
+	assertEquals(99d, MergeType.P99.merge(values, 0, values.length), 0);
+	assertEquals(1d, MergeType.quantile(0).merge(values, 0, values.length), 0);
+	assertEquals(0d, MergeType.P50.merge(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testAccuracy()
+    {
+	double[] gaussian = getValues(200000, 1);
+	double[] sorted = gaussian.clone();
+	Arrays.sort(sorted);
+	double[] duplicates = new double[200000];
+	for (int i = 0; i < duplicates.length; i++)
+	    duplicates[i] = i % 17;
+
+	for (double quantile : quantiles)
+	{
+	    MergeType mergeType = MergeType.quantile(quantile);
+	    assertAccurate(gaussian, quantile, mergeType.merge(gaussian, 0, gaussian.length));
+	    assertAccurate(sorted, quantile, mergeType.merge(sorted, 0, sorted.length));
+	    assertAccurate(duplicates, quantile, mergeType.merge(duplicates, 0, duplicates.length));
+	}
+    }
+
+    @Test
+    public void testHigherAccuracy()
+    {
+	double[] values = getValues(100000, 2);
+	double[] sorted = values.clone();
+	Arrays.sort(sorted);
+
+	for (double quantile : quantiles)
+	{
+	    double estimate = MergeType.quantile(quantile, 1000).merge(values, 0, values.length);
+	    assertTrue(rankError(sorted, quantile, estimate) <= 0.005);
+	}
+    }
+
+    @Test
+    public void testCombine()
+    {
+	double[] values = getValues(200000, 3);
+	for (double quantile : quantiles)
+	{
+	    MergeType mergeType = MergeType.quantile(quantile);
+	    Accumulator total = mergeType.createAccumulator();
+	    int parts = 16;
+	    for (int part = 0; part < parts; part++)
+	    {
+		Accumulator accumulator = mergeType.createAccumulator();
+		accumulator.acceptAll(values, part * values.length / parts, (part + 1) * values.length / parts);
+		total.combine(accumulator);
+	    }
+	    assertAccurate(values, quantile, total.finish());
+	}
+    }
+
+    @Test
+    public void testBoundedMemory()
+    {
+	QuantileSketch sketch = new QuantileSketch(0.9, 200);
+	Random random = new Random(4);
+	int maxRetained = 0;
+	for (int i = 0; i < 1000000; i++)
+	{
+	    sketch.accept(random.nextDouble());
+	    maxRetained = Math.max(maxRetained, sketch.getRetained());
+	}
+	assertTrue("Keeps too many values: " + maxRetained, maxRetained <= 3 * 200 + 64);
+    }
+
+    @Test(timeout = 20000)
+    public void testThroughput()
+    {
+	// Exact quantiles would have to keep and sort all values of a bucket
+	double[] values = getValues(1 << 16, 5);
+	Accumulator accumulator = MergeType.P99.createAccumulator();
+	for (int round = 0; round < 64; round++)
+	    accumulator.acceptAll(values, 0, values.length);
+	assertAccurate(values, 0.99, accumulator.finish());
+    }
+
+    @Test
+    public void testMatchModes()
+    {
+	Random random = new Random(6);
+	HashMap<LocalDate, Double> data = new HashMap<>();
+	for (int day = 0; day < 5000; day++)
+	    data.put(LocalDate.ofEpochDay(day), random.nextDouble() * 100);
+	DataSource source = new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return "Random";
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "[unit]";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return Collections.unmodifiableMap(data);
+	    }
+	};
+
+	for (MatchMode matchMode : MatchMode.values())
+	{
+	    Map<String, MatchedDataPair> result = new DataCollectionBuilder(source, source, Resolution.YEAR)
+		    .setXMergeType(MergeType.P90)
+		    .setYMergeType(MergeType.quantile(0.9, 2000))
+		    .setMatchMode(matchMode)
+		    .setMatchCache(null)
+		    .getResult()
+		    .getData();
+
+	    for (Entry<String, MatchedDataPair> entry : result.entrySet())
+	    {
+		double[] bucket = data.entrySet()
+			.stream()
+			.filter((value) -> Resolution.YEAR.toKey(value.getKey()).equals(entry.getKey()))
+			.mapToDouble(Entry::getValue)
+			.toArray();
+		assertAccurate(bucket, 0.9, entry.getValue().getXValue());
+		// Buckets of at most 366 values fit in a sketch of accuracy 2000
+		Arrays.sort(bucket);
+		assertEquals(0, rankError(bucket, 0.9, entry.getValue().getYValue()), 0);
+	    }
+	}
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile()
+    {
+	MergeType.quantile(1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAccuracy()
+    {
+	MergeType.quantile(0.5, 1);
+    }
+}
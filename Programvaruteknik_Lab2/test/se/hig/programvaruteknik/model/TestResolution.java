@@ -1,8 +1,10 @@
 package se.hig.programvaruteknik.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.time.LocalDate;
+import java.time.Month;
 
 import org.junit.Test;
 
@@ -56,4 +58,106 @@ public class TestResolution
     {
 	assertEquals("2016", Resolution.YEAR.toKey(LocalDate.of(2016, 1, 1)));
     }
+
+    @Test
+    public void testStartOf()
+    {
+	assertEquals(LocalDate.of(2016, 2, 14), Resolution.DAY.startOf(LocalDate.of(2016, 2, 14)));
+	assertEquals(LocalDate.of(2016, 1, 4), Resolution.WEEK.startOf(LocalDate.of(2016, 1, 10)));
+	assertEquals(LocalDate.of(2015, 12, 28), Resolution.WEEK.startOf(LocalDate.of(2016, 1, 3)));
+	assertEquals(LocalDate.of(2016, 2, 1), Resolution.MONTH.startOf(LocalDate.of(2016, 2, 29)));
+	assertEquals(LocalDate.of(2016, 4, 1), Resolution.QUARTER.startOf(LocalDate.of(2016, 6, 30)));
+	assertEquals(LocalDate.of(2016, 1, 1), Resolution.YEAR.startOf(LocalDate.of(2016, 12, 31)));
+    }
+
+    @Test
+    public void testBuckets()
+    {
+	for (Resolution resolution : Resolution.values())
+	{
+	    long previous = Long.MIN_VALUE;
+	    for (LocalDate date = LocalDate.of(1890, 1, 1); date.getYear() < 2110; date = date.plusDays(1))
+	    {
+		long bucket = resolution.toBucket(date);
+		assertEquals(resolution.toKey(date), resolution.bucketKey(bucket));
+		assertEquals(resolution.startOf(date).toEpochDay(), resolution.bucketStart(bucket));
+		assertTrue("Buckets out of order", bucket >= previous);
+		previous = bucket;
+	    }
+	}
+    }
+
+    @Test
+    public void testBucketsBeforeEpoch()
+    {
+	for (Resolution resolution : Resolution.values())
+	{
+	    for (LocalDate date : new LocalDate[]
+	    {
+		    LocalDate.of(-400, 2, 29),
+		    LocalDate.of(0, 1, 1),
+		    LocalDate.of(1, 12, 31),
+		    LocalDate.of(1969, 12, 31),
+		    LocalDate.of(1970, 1, 1)
+	    })
+	    {
+		assertEquals(resolution.toKey(date), resolution.bucketKey(resolution.toBucket(date)));
+	    }
+	}
+    }
+
+    private static void assertBuckets(DateResolution resolution, long firstDay, long lastDay)
+    {
+	long previous = resolution.toBucket(firstDay);
+	for (long day = firstDay; day <= lastDay; day++)
+	{
+	    long bucket = resolution.toBucket(day);
+	    assertTrue("Buckets out of order", bucket == previous || bucket == previous + 1);
+	    if (bucket != previous) assertEquals(day, resolution.bucketStart(bucket));
+	    assertTrue(resolution.bucketStart(bucket) <= day);
+	    previous = bucket;
+	}
+    }
+
+    @Test
+    public void testDays()
+    {
+	DateResolution days = DateResolution.days(3);
+	assertEquals("1970-01-01", days.toKey(LocalDate.of(1970, 1, 3)));
+	assertEquals("1970-01-04", days.toKey(LocalDate.of(1970, 1, 4)));
+	assertEquals("1969-12-29", days.toKey(LocalDate.of(1969, 12, 31)));
+	assertBuckets(days, -1000, 1000);
+
+	DateResolution tenDays = DateResolution.days(10, LocalDate.of(2016, 2, 1));
+	assertEquals("2016-02-01", tenDays.toKey(LocalDate.of(2016, 2, 10)));
+	assertEquals("2016-02-11", tenDays.toKey(LocalDate.of(2016, 2, 11)));
+	assertEquals("2016-01-22", tenDays.toKey(LocalDate.of(2016, 1, 31)));
+	assertBuckets(tenDays, 16000, 18000);
+
+	assertEquals(tenDays, DateResolution.days(10, LocalDate.of(2016, 1, 22)));
+	assertTrue(!tenDays.equals(DateResolution.days(10)));
+    }
+
+    @Test
+    public void testMonths()
+    {
+	assertEquals("2015-12", DateResolution.SEASON.toKey(LocalDate.of(2016, 2, 29)));
+	assertEquals("2016-03", DateResolution.SEASON.toKey(LocalDate.of(2016, 3, 1)));
+	assertEquals("2016-12", DateResolution.SEASON.toKey(LocalDate.of(2016, 12, 1)));
+	assertEquals(LocalDate.of(2015, 12, 1), DateResolution.SEASON.startOf(LocalDate.of(2016, 1, 15)));
+	assertBuckets(DateResolution.SEASON, -1000, 20000);
+
+	DateResolution footballSeason = DateResolution.months(12, Month.AUGUST);
+	assertEquals("2015-08", footballSeason.toKey(LocalDate.of(2016, 5, 15)));
+	assertEquals("2016-08", footballSeason.toKey(LocalDate.of(2016, 8, 1)));
+	assertBuckets(footballSeason, -1000, 20000);
+
+	assertEquals(DateResolution.SEASON, DateResolution.months(3, Month.MARCH));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMonths()
+    {
+	DateResolution.months(5, Month.JANUARY);
+    }
 }
@@ -0,0 +1,146 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import se.hig.programvaruteknik.model.DataCollectionBuilder.MatchMode;
+
+@SuppressWarnings("javadoc")
+public class TestRollUp
+{
+    private static class CountingSource implements DataSource
+    {
+	private final Map<LocalDate, Double> data;
+	private int reads = 0;
+
+	private CountingSource(int firstDay, int lastDay, int step, int modulo)
+	{
+	    HashMap<LocalDate, Double> data = new HashMap<>();
+	    for (int day = firstDay; day <= lastDay; day += step)
+		data.put(LocalDate.ofEpochDay(day), (day % modulo) / 4d);
+	    this.data = Collections.unmodifiableMap(data);
+	}
+
+	@Override
+	public String getName()
+	{
+	    return "Counting";
+	}
+
+	@Override
+	public String getUnit()
+	{
+	    return "[unit]";
+	}
+
+	@Override
+	public Map<LocalDate, Double> getData()
+	{
+	    reads++;
+	    return data;
+	}
+    }
+
+    private static void assertMatches(Map<String, MatchedDataPair> expected, Map<String, MatchedDataPair> actual)
+    {
+	assertEquals(expected.size(), actual.size());
+	for (Entry<String, MatchedDataPair> entry : expected.entrySet())
+	{
+	    MatchedDataPair pair = actual.get(entry.getKey());
+	    assertNotNull("Missing key", pair);
+	    assertEquals(entry.getValue().getXValue(), pair.getXValue(), 0);
+	    assertEquals(entry.getValue().getYValue(), pair.getYValue(), 0);
+	}
+    }
+
+    @Test
+    public void testExact()
+    {
+	DataSource x = new CountingSource(-2000, 6000, 1, 13);
+	DataSource y = new CountingSource(-500, 9000, 3, 7);
+
+	for (MergeType mergeType : new MergeType[] { MergeType.SUM, MergeType.AVERAGE })
+	{
+	    RollUp rollUp = new RollUp(x, mergeType, y, mergeType);
+	    for (Resolution resolution : Resolution.values())
+	    {
+		Map<String, MatchedDataPair> expected = DataCollectionBuilder.matchData(
+			x,
+			mergeType,
+			y,
+			mergeType,
+			resolution);
+		assertMatches(expected, rollUp.match(resolution));
+	    }
+	}
+    }
+
+    @Test
+    public void testOrder()
+    {
+	DataSource x = new CountingSource(0, 1000, 1, 5);
+	DataSource y = new CountingSource(0, 1000, 2, 5);
+	RollUp rollUp = new RollUp(x, MergeType.SUM, y, MergeType.SUM);
+
+	for (Resolution resolution : Resolution.values())
+	    assertEquals(
+		    new ArrayList<>(DataCollectionBuilder.mergeData(x, MergeType.SUM, y, MergeType.SUM, resolution).keySet()),
+		    new ArrayList<>(rollUp.match(resolution).keySet()));
+    }
+
+    @Test
+    public void testSwitchResolution()
+    {
+	CountingSource x = new CountingSource(0, 3000, 1, 11);
+	CountingSource y = new CountingSource(0, 3000, 1, 3);
+
+	Map<Resolution, Map<String, MatchedDataPair>> expected = new EnumMap<>(Resolution.class);
+	for (Resolution resolution : Resolution.values())
+	    expected.put(resolution, DataCollectionBuilder.matchData(x, MergeType.SUM, y, MergeType.SUM, resolution));
+
+	DataCollectionBuilder builder = new DataCollectionBuilder(x, y, Resolution.DAY)
+		.setMatchMode(MatchMode.ROLL_UP)
+		.setMatchCache(null);
+	builder.getResult();
+	int xReads = x.reads;
+	int yReads = y.reads;
+
+	for (Resolution resolution : Resolution.values())
+	    assertMatches(expected.get(resolution), builder.setResolution(resolution).getResult().getData());
+
+	assertEquals(xReads, x.reads);
+	assertEquals(yReads, y.reads);
+
+	builder.setXMergeType(MergeType.AVERAGE).getResult();
+	assertTrue(x.reads > xReads);
+    }
+
+    @Test
+    public void testCongruentOrigins()
+    {
+	CountingSource x = new CountingSource(0, 300, 1, 11);
+	CountingSource y = new CountingSource(0, 300, 1, 3);
+
+	// Equal resolutions, as their spans start on the same days
+	DateResolution first = DateResolution.days(7, LocalDate.of(2020, 1, 1));
+	DateResolution second = DateResolution.days(7, LocalDate.of(2020, 1, 8));
+	assertEquals(first, second);
+
+	DataCollectionBuilder builder = new DataCollectionBuilder(x, y, first)
+		.setMatchMode(MatchMode.ROLL_UP)
+		.setMatchCache(null);
+	for (DateResolution resolution : new DateResolution[] { first, second, first })
+	    assertMatches(
+		    DataCollectionBuilder.matchData(x, MergeType.SUM, y, MergeType.SUM, resolution),
+		    builder.setResolution(resolution).getResult().getData());
+    }
+}
@@ -0,0 +1,137 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestSlidingWindow
+{
+    private static DataSource getDataSource(Map<LocalDate, Double> data)
+    {
+	return new DataSource()
+	{
+	    @Override
+	    public String getName()
+	    {
+		return "Random";
+	    }
+
+	    @Override
+	    public String getUnit()
+	    {
+		return "[unit]";
+	    }
+
+	    @Override
+	    public Map<LocalDate, Double> getData()
+	    {
+		return Collections.unmodifiableMap(data);
+	    }
+	};
+    }
+
+    private static Map<LocalDate, Double> getRandomData(long seed)
+    {
+	Random random = new Random(seed);
+	Map<LocalDate, Double> data = new HashMap<>();
+	for (int day = -200; day < 600; day++)
+	{
+	    // Leave gaps that are longer than the windows
+	    if (day > 100 && day < 180) continue;
+	    if (random.nextInt(3) == 0) data.put(LocalDate.ofEpochDay(day), (double) random.nextInt(50));
+	}
+	return data;
+    }
+
+    /**
+     * Merges every window from scratch
+     */
+    private static Map<LocalDate, Double> bruteForce(Map<LocalDate, Double> data, int length, int stride, MergeType mergeType)
+    {
+	Map<LocalDate, Double> windows = new LinkedHashMap<>();
+	for (long start = Math.floorDiv(-200 - length, stride) * stride; start < 600; start += stride)
+	{
+	    List<Double> values = new ArrayList<>();
+	    for (long day = start; day < start + length; day++)
+	    {
+		Double value = data.get(LocalDate.ofEpochDay(day));
+		if (value != null) values.add(value);
+	    }
+	    if (!values.isEmpty()) windows.put(LocalDate.ofEpochDay(start), mergeType.merge(values));
+	}
+	return windows;
+    }
+
+    @Test
+    public void testAggregate()
+    {
+	Map<LocalDate, Double> data = getRandomData(1);
+	DataSource source = getDataSource(data);
+
+	int[][] shapes = { { 1, 1 }, { 3, 3 }, { 7, 1 }, { 10, 3 }, { 6, 4 }, { 30, 7 }, { 2, 5 } };
+	MergeType[] mergeTypes = { MergeType.SUM, MergeType.AVERAGE, MergeType.MEDIAN, MergeType.MAX, MergeType.COUNT };
+	for (int[] shape : shapes)
+	    for (MergeType mergeType : mergeTypes)
+	    {
+		Map<LocalDate, Double> expected = bruteForce(data, shape[0], shape[1], mergeType);
+		Map<LocalDate, Double> actual = new SlidingWindow(shape[0], shape[1]).aggregate(source, mergeType);
+
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		for (Entry<LocalDate, Double> entry : expected.entrySet())
+		    assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-9);
+	    }
+    }
+
+    @Test
+    public void testMatch()
+    {
+	Map<LocalDate, Double> xData = getRandomData(2);
+	Map<LocalDate, Double> yData = getRandomData(3);
+	SlidingWindow window = new SlidingWindow(14, 7);
+
+	Map<String, MatchedDataPair> matches = new DataCollectionBuilder()
+		.setXDatasource(getDataSource(xData))
+		.setYDatasource(getDataSource(yData))
+		.setYMergeType(MergeType.AVERAGE)
+		.setWindow(window)
+		.getResult()
+		.getData();
+
+	Map<LocalDate, Double> x = bruteForce(xData, 14, 7, MergeType.SUM);
+	Map<LocalDate, Double> y = bruteForce(yData, 14, 7, MergeType.AVERAGE);
+	x.keySet().retainAll(y.keySet());
+	assertEquals(x.size(), matches.size());
+	for (Entry<LocalDate, Double> entry : x.entrySet())
+	{
+	    MatchedDataPair pair = matches.get(entry.getKey().toString());
+	    assertNotNull("Missing window", pair);
+	    assertEquals(entry.getValue(), pair.getXValue(), 1e-9);
+	    assertEquals(y.get(entry.getKey()), pair.getYValue(), 1e-9);
+	}
+    }
+
+    @Test
+    public void testEquals()
+    {
+	// Both are Thursdays, as 1970-01-01
+	assertEquals(new SlidingWindow(14, 7, LocalDate.of(2016, 1, 7)), new SlidingWindow(14, 7));
+	assertTrue(!new SlidingWindow(14, 7).equals(new SlidingWindow(14, 7, LocalDate.of(2016, 1, 4))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStride()
+    {
+	new SlidingWindow(7, 0);
+    }
+}
@@ -0,0 +1,163 @@
+package se.hig.programvaruteknik.model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.hig.programvaruteknik.model.TimeSeriesBuilder.TimeSeriesBuilderException;
+
+@SuppressWarnings("javadoc")
+public class TestTimeSeries
+{
+    private static long toEpochSecond(String dateTime)
+    {
+	return LocalDateTime.parse(dateTime).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static TimeSeries getSeries(long[] times, double[] values)
+    {
+	return getSeries(times, values, MergeType.SUM);
+    }
+
+    private static TimeSeries getSeries(long[] times, double[] values, MergeType reducer)
+    {
+	return new TimeSeriesBuilder()
+	{
+	    {
+		setName("Series");
+		setUnit("Unit");
+		setDataReducer(reducer);
+	    }
+
+	    @Override
+	    protected void generateData(TimeValueConsumer consumer)
+	    {
+		for (int i = 0; i < times.length; i++)
+		    consumer.accept(times[i], values[i]);
+	    }
+	}.build();
+    }
+
+    @Test
+    public void testBuild()
+    {
+	long[] times = new long[1000];
+	double[] values = new double[1000];
+	Random random = new Random(1);
+	for (int i = 0; i < times.length; i++)
+	{
+	    times[i] = random.nextInt(500) * 60;
+	    values[i] = 1;
+	}
+
+	TimeSeries series = getSeries(times, values);
+	long[] distinct = Arrays.stream(times).sorted().distinct().toArray();
+	assertEquals(distinct.length, series.size());
+
+	double total = 0;
+	for (int i = 0; i < series.size(); i++)
+	{
+	    assertEquals(distinct[i], series.getTime(i));
+	    total += series.getValue(i);
+	}
+	assertEquals(1000, total, 0);
+    }
+
+    @Test
+    public void testSingleValues()
+    {
+	// Times with a single value are reduced as well, as in DataSourceBuilder
+	long[] times = { 0, 60, 60 };
+	double[] values = { 5, 5, 7 };
+
+	TimeSeries count = getSeries(times, values, MergeType.COUNT);
+	assertEquals(1, count.getValue(0), 0);
+	assertEquals(2, count.getValue(1), 0);
+
+	TimeSeries deviation = getSeries(times, values, MergeType.STANDARD_DEVIATION);
+	assertEquals(0, deviation.getValue(0), 0);
+	assertEquals(1, deviation.getValue(1), 1e-9);
+
+	TimeSeries sampleDeviation = getSeries(times, values, MergeType.SAMPLE_STANDARD_DEVIATION);
+	assertEquals(MergeType.SAMPLE_STANDARD_DEVIATION.merge(new double[] { 5 }, 0, 1), sampleDeviation.getValue(0), 0);
+	assertNotEquals(5, sampleDeviation.getValue(0), 0);
+    }
+
+    @Test
+    public void testKeys()
+    {
+	long time = toEpochSecond("2016-02-01T13:47:12");
+	assertEquals("2016-02-01T13:00", TimeResolution.HOUR.toKey(time));
+	assertEquals("2016-02-01T13:47", TimeResolution.MINUTE.toKey(time));
+	assertEquals("2016-02-01T13:45", TimeResolution.seconds(15 * 60).toKey(time));
+	assertEquals("2016-02-01T00:00", TimeResolution.DAY.toKey(time));
+	assertEquals("1969-12-31T23:00", TimeResolution.HOUR.toKey(-1));
+	assertEquals(TimeResolution.HOUR, TimeResolution.seconds(3600, 7200));
+    }
+
+    @Test
+    public void testAggregate()
+    {
+	TimeSeries series = getSeries(
+		new long[] {
+			toEpochSecond("2016-02-01T13:10"),
+			toEpochSecond("2016-02-01T13:50"),
+			toEpochSecond("2016-02-01T15:00"),
+			toEpochSecond("2016-02-02T01:00") },
+		new double[] { 1, 2, 4, 8 });
+
+	Map<String, Double> hours = TimeResolution.HOUR.aggregate(series, MergeType.SUM);
+	assertEquals(Arrays.asList("2016-02-01T13:00", "2016-02-01T15:00", "2016-02-02T01:00"), Arrays.asList(hours.keySet().toArray()));
+	assertEquals(3, hours.get("2016-02-01T13:00"), 0);
+
+	Map<LocalDate, Double> days = series.toDataSource(MergeType.AVERAGE).getData();
+	assertEquals(2, days.size());
+	assertEquals(7 / 3.0, days.get(LocalDate.of(2016, 2, 1)), 1e-9);
+	assertEquals(8, days.get(LocalDate.of(2016, 2, 2)), 0);
+    }
+
+    @Test
+    public void testMatch()
+    {
+	TimeSeries x = getSeries(
+		new long[] { toEpochSecond("2016-02-01T13:10"), toEpochSecond("2016-02-01T14:10"), toEpochSecond("2016-02-01T14:20") },
+		new double[] { 1, 2, 4 });
+	TimeSeries y = getSeries(
+		new long[] { toEpochSecond("2016-02-01T14:59"), toEpochSecond("2016-02-01T16:00") },
+		new double[] { 10, 20 });
+
+	Map<String, MatchedDataPair> matches = TimeResolution.HOUR.match(x, MergeType.AVERAGE, y, MergeType.SUM);
+	assertEquals(1, matches.size());
+	assertEquals(3, matches.get("2016-02-01T14:00").getXValue(), 0);
+	assertEquals(10, matches.get("2016-02-01T14:00").getYValue(), 0);
+    }
+
+    @Test(expected = TimeSeriesBuilderException.class)
+    public void testMissingName()
+    {
+	new TimeSeriesBuilder()
+	{
+	    {
+		setUnit("Unit");
+	    }
+
+	    @Override
+	    protected void generateData(TimeValueConsumer consumer)
+	    {
+	    }
+	}.build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSeconds()
+    {
+	TimeResolution.seconds(0);
+    }
+}